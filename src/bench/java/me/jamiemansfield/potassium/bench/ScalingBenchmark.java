@@ -0,0 +1,239 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.bench;
+
+import static java.util.Arrays.asList;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.env.MinecraftClassicEnvironment;
+import me.jamiemansfield.potassium.jar.JarWalker;
+import me.jamiemansfield.potassium.jar.SourceSet;
+import me.jamiemansfield.potassium.patcher.InnerClassPatcher;
+import me.jamiemansfield.potassium.tool.MinecraftClassicPatcherTool;
+import me.jamiemansfield.potassium.tool.PathValueConverter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An end-to-end benchmark of Potassium, over synthetic jars of
+ * increasing size - recording wall time, peak heap, and GC time for
+ * walking, mapping, and patching each jar.
+ *
+ * <p>Should a baseline be given, the run fails if the time per class
+ * of any size has regressed by more than the threshold.</p>
+ */
+public final class ScalingBenchmark {
+
+    public static void main(final String[] args) throws IOException {
+        final OptionParser parser = new OptionParser();
+
+        final OptionSpec<Void> helpSpec = parser.acceptsAll(asList("?", "help"), "Show the help")
+                .forHelp();
+
+        final OptionSpec<Integer> classesSpec = parser.accepts("classes", "The class counts to benchmark")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .withValuesSeparatedBy(',')
+                .defaultsTo(1000, 10000, 100000);
+        final OptionSpec<Integer> threadsSpec = parser.accepts("threads", "The number of threads to map with")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+        final OptionSpec<Path> workDirSpec = parser.accepts("workDir", "The directory to generate jars in")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE)
+                .defaultsTo(Paths.get("build", "benchmark"));
+        final OptionSpec<Path> baselineSpec = parser.accepts("baseline", "A previous results file, to compare against")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE);
+        final OptionSpec<Double> thresholdSpec = parser.accepts("threshold", "The allowed regression in time per class, as a fraction")
+                .withRequiredArg()
+                .ofType(Double.class)
+                .defaultsTo(0.2);
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (final OptionException ex) {
+            System.err.println("Failed to parse OptionSet! Exiting...");
+            ex.printStackTrace(System.err);
+            System.exit(-1);
+            return;
+        }
+
+        if (options == null || options.has(helpSpec)) {
+            try {
+                parser.printHelpOn(System.err);
+            } catch (final IOException ex) {
+                System.err.println("Failed to print help information!");
+                ex.printStackTrace(System.err);
+            }
+            System.exit(-1);
+            return;
+        }
+
+        final Path workDir = options.valueOf(workDirSpec);
+        Files.createDirectories(workDir);
+
+        final List<Result> results = new ArrayList<>();
+        for (final int classes : options.valuesOf(classesSpec)) {
+            final Path jar = workDir.resolve("synthetic-" + classes + ".jar");
+            if (!Files.exists(jar)) {
+                new SyntheticJarGenerator(classes, classes).generate(jar);
+            }
+
+            final Result result = run(jar, workDir.resolve("synthetic-" + classes + "-fixed.jar"), classes, options.valueOf(threadsSpec));
+            System.out.println(result);
+            results.add(result);
+        }
+
+        final Path resultsFile = workDir.resolve("scaling.csv");
+        try (final PrintStream out = new PrintStream(Files.newOutputStream(resultsFile))) {
+            out.println(Result.HEADER);
+            results.forEach(out::println);
+        }
+        System.out.println("Wrote results to " + resultsFile);
+
+        if (options.has(baselineSpec) && !compare(results, options.valueOf(baselineSpec), options.valueOf(thresholdSpec))) {
+            System.exit(1);
+        }
+    }
+
+    private static Result run(final Path jar, final Path fixedJar, final int classes, final int threads) throws IOException {
+        System.gc();
+        final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        final long gcBefore = gcMillis();
+        final long start = System.nanoTime();
+
+        final SourceSet sources = new SourceSet();
+        new JarWalker(jar).walk(sources);
+        final MinecraftClassicEnvironment env = new MinecraftClassicEnvironment(sources, Environment.Side.CLIENT);
+        env.setParallelism(threads);
+        env.map();
+        InnerClassPatcher.patchJar(jar, fixedJar, MinecraftClassicPatcherTool.clientConfiguration());
+
+        final long wallNanos = System.nanoTime() - start;
+        long peakHeap = 0;
+        for (final MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        return new Result(classes, wallNanos, peakHeap, gcMillis() - gcBefore);
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static boolean compare(final List<Result> results, final Path baselineFile, final double threshold) throws IOException {
+        final Map<Integer, Double> baseline = new HashMap<>();
+        for (final String line : Files.readAllLines(baselineFile)) {
+            if (line.isEmpty() || line.startsWith("classes")) continue;
+            final String[] columns = line.split(",");
+            baseline.put(Integer.parseInt(columns[0]), Double.parseDouble(columns[2]));
+        }
+
+        boolean passed = true;
+        for (final Result result : results) {
+            final Double expected = baseline.get(result.classes);
+            if (expected == null) continue;
+
+            final double change = result.nanosPerClass() / expected - 1;
+            if (change > threshold) {
+                System.err.println(String.format(Locale.ROOT, "%d classes regressed by %.1f%% (allowed %.1f%%)",
+                        result.classes, change * 100, threshold * 100));
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    private static final class Result {
+
+        static final String HEADER = "classes,wallMillis,nanosPerClass,peakHeapBytes,gcMillis";
+
+        final int classes;
+        final long wallNanos;
+        final long peakHeap;
+        final long gcMillis;
+
+        Result(final int classes, final long wallNanos, final long peakHeap, final long gcMillis) {
+            this.classes = classes;
+            this.wallNanos = wallNanos;
+            this.peakHeap = peakHeap;
+            this.gcMillis = gcMillis;
+        }
+
+        double nanosPerClass() {
+            return (double) this.wallNanos / this.classes;
+        }
+
+        @Override
+        public String toString() {
+            return this.classes + "," + this.wallNanos / 1000000 + "," + String.format(Locale.ROOT, "%.1f", this.nanosPerClass()) + "," +
+                    this.peakHeap + "," + this.gcMillis;
+        }
+
+    }
+
+    private ScalingBenchmark() {
+    }
+
+}
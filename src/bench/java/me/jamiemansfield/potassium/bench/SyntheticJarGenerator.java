@@ -0,0 +1,244 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.bench;
+
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A generator of synthetic jars, that resemble an obfuscated Minecraft
+ * Classic client - short class names, fields typed by the classes the
+ * mappers look for, inner classes, and methods that invoke each other
+ * and load string constants.
+ *
+ * <p>Generation is seeded, so the same arguments always produce the
+ * same jar.</p>
+ */
+public final class SyntheticJarGenerator {
+
+    private static final String PACKAGE = "com/mojang/minecraft/";
+    private static final String LEVEL = PACKAGE + "level/Level";
+    private static final String APPLET = PACKAGE + "MinecraftApplet";
+    private static final String PLAYER = PACKAGE + "player/Player";
+
+    private final int classCount;
+    private final Random random;
+
+    /**
+     * Creates a new generator, of jars with the given number of
+     * obfuscated classes.
+     *
+     * @param classCount The number of obfuscated classes
+     * @param seed The seed of the generator
+     */
+    public SyntheticJarGenerator(final int classCount, final long seed) {
+        this.classCount = classCount;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a jar, to the given path.
+     *
+     * @param jarPath The path to write the jar to
+     * @throws IOException Should the jar fail to be written
+     */
+    public void generate(final Path jarPath) throws IOException {
+        final List<String> names = new ArrayList<>(this.classCount);
+        for (int i = 0; i < this.classCount; i++) {
+            names.add(PACKAGE + obfuscatedName(i));
+        }
+
+        try (final JarOutputStream jos = new JarOutputStream(Files.newOutputStream(jarPath))) {
+            // The classes the Classic environment discovers others from
+            write(jos, LEVEL, this.namedClass(LEVEL, "particleEngine", names));
+            write(jos, APPLET, this.namedClass(APPLET, "minecraft", names));
+            write(jos, PLAYER, this.namedClass(PLAYER, "level", names));
+
+            for (int i = 0; i < names.size(); i++) {
+                final String name = names.get(i);
+                write(jos, name, this.obfuscatedClass(name, names));
+
+                // Roughly one in ten classes has an anonymous inner class
+                if (i % 10 == 0) {
+                    write(jos, name + "$1", this.innerClass(name));
+                }
+            }
+        }
+    }
+
+    private byte[] namedClass(final String name, final String discoveredField, final List<String> names) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_5, ACC_PUBLIC, name, null, "java/lang/Object", null);
+        cw.visitField(ACC_PUBLIC, discoveredField, "L" + this.pick(names) + ";", null, null).visitEnd();
+        this.constructor(cw);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private byte[] obfuscatedClass(final String name, final List<String> names) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_5, ACC_PUBLIC, name, null, "java/lang/Object", null);
+
+        // Fields, some of which are of the types the mappers look for
+        final int fields = 1 + this.random.nextInt(8);
+        final List<String[]> declared = new ArrayList<>();
+        for (int i = 0; i < fields; i++) {
+            final String desc;
+            switch (this.random.nextInt(6)) {
+                case 0:
+                    desc = "L" + LEVEL + ";";
+                    break;
+                case 1:
+                    desc = "L" + PLAYER + ";";
+                    break;
+                case 2:
+                    desc = "I";
+                    break;
+                default:
+                    desc = "L" + this.pick(names) + ";";
+                    break;
+            }
+            final String fieldName = obfuscatedName(i);
+            cw.visitField(ACC_PRIVATE, fieldName, desc, null, null).visitEnd();
+            declared.add(new String[] { fieldName, desc });
+        }
+
+        this.constructor(cw);
+
+        // Methods, that read fields, invoke other classes, and load strings
+        final int methods = 1 + this.random.nextInt(6);
+        for (int i = 0; i < methods; i++) {
+            final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, obfuscatedName(i), "()V", null, null);
+            mv.visitCode();
+            for (int j = 0; j < 4; j++) {
+                final String[] field = declared.get(this.random.nextInt(declared.size()));
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, name, field[0], field[1]);
+                mv.visitInsn(POP);
+            }
+            mv.visitLdcInsn("message " + this.random.nextInt(this.classCount));
+            mv.visitInsn(POP);
+            mv.visitMethodInsn(INVOKESTATIC, this.pick(names), "s", "()V", false);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKEVIRTUAL, name, obfuscatedName(0), "()V", false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "s", "()V", null, null);
+        mv.visitCode();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private byte[] innerClass(final String outer) {
+        final String name = outer + "$1";
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_5, 0, name, null, "java/lang/Object", new String[] { "java/lang/Runnable" });
+        cw.visitOuterClass(outer, null, null);
+        cw.visitInnerClass(name, null, null, 0);
+        this.constructor(cw);
+
+        final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "run", "()V", null, null);
+        mv.visitCode();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private void constructor(final ClassWriter cw) {
+        final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private String pick(final List<String> names) {
+        return names.get(this.random.nextInt(names.size()));
+    }
+
+    private static void write(final JarOutputStream jos, final String name, final byte[] bytes) throws IOException {
+        jos.putNextEntry(new JarEntry(name + ".class"));
+        jos.write(bytes);
+        jos.closeEntry();
+    }
+
+    /**
+     * Gets the obfuscated name of the given index - a, b, ..., z, aa, ab,
+     * and so on.
+     *
+     * @param index The index
+     * @return The obfuscated name
+     */
+    static String obfuscatedName(int index) {
+        final StringBuilder name = new StringBuilder();
+        do {
+            name.insert(0, (char) ('a' + index % 26));
+            index = index / 26 - 1;
+        } while (index >= 0);
+        return name.toString();
+    }
+
+}
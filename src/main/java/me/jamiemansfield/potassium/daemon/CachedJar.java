@@ -0,0 +1,126 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.daemon;
+
+import me.jamiemansfield.lorenz.MappingSet;
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.env.MinecraftClassicEnvironment;
+import me.jamiemansfield.potassium.index.MappingQueryIndex;
+import me.jamiemansfield.potassium.jar.SourceSet;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Represents a jar that has been loaded by the daemon, alongside
+ * the mappings that have been generated for it.
+ */
+public final class CachedJar {
+
+    private final SourceSet sources;
+    private final Map<Environment.Side, Mapped> mapped = new EnumMap<>(Environment.Side.class);
+
+    /**
+     * Creates a new cached jar, from the given source set.
+     *
+     * @param sources The source set
+     */
+    public CachedJar(final SourceSet sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Gets the {@link SourceSet} of the jar.
+     *
+     * @return The source set
+     */
+    public SourceSet getSources() {
+        return this.sources;
+    }
+
+    /**
+     * Gets the {@link MappingSet} generated for the given side, mapping
+     * the jar should it not have been mapped previously.
+     *
+     * @param side The side
+     * @return The mapping set
+     */
+    public MappingSet getMappings(final Environment.Side side) {
+        return this.getMapped(side).mappings;
+    }
+
+    /**
+     * Looks up the de-obfuscated name of the given class, or member (in
+     * the form {@code owner.name}), for the given side.
+     *
+     * @param side The side
+     * @param obfuscatedName The obfuscated name
+     * @return The de-obfuscated name, or null should there be no mapping
+     */
+    public String lookup(final Environment.Side side, final String obfuscatedName) {
+        return this.getQueryIndex(side).getDeobfuscatedName(obfuscatedName);
+    }
+
+    /**
+     * Gets the {@link MappingQueryIndex} of the mappings generated for
+     * the given side, mapping the jar should it not have been mapped
+     * previously.
+     *
+     * @param side The side
+     * @return The query index
+     */
+    public MappingQueryIndex getQueryIndex(final Environment.Side side) {
+        return this.getMapped(side).index;
+    }
+
+    private synchronized Mapped getMapped(final Environment.Side side) {
+        return this.mapped.computeIfAbsent(side, key -> {
+            final MinecraftClassicEnvironment env = new MinecraftClassicEnvironment(this.sources, key);
+            env.map();
+            return new Mapped(env.getMappings());
+        });
+    }
+
+    private static final class Mapped {
+
+        private final MappingSet mappings;
+        private final MappingQueryIndex index;
+
+        private Mapped(final MappingSet mappings) {
+            this.mappings = mappings;
+            this.index = MappingQueryIndex.of(mappings);
+        }
+
+    }
+
+}
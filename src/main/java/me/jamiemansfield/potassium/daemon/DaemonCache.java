@@ -0,0 +1,146 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.daemon;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import me.jamiemansfield.potassium.jar.ClassStore;
+import me.jamiemansfield.potassium.jar.JarWalker;
+import me.jamiemansfield.potassium.jar.SourceSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A cache of {@link CachedJar}s, keyed by the hash of the jar's
+ * contents - so a jar that is moved, or copied, is still only
+ * loaded once.
+ */
+public final class DaemonCache {
+
+    private final Map<Path, FileKey> hashes = new ConcurrentHashMap<>();
+    private final Cache<HashCode, CachedJar> jars;
+    // Shared by every cached jar, so neighbouring versions share classes
+    private final ClassStore store = new ClassStore();
+
+    /**
+     * Creates a new daemon cache, holding at most the given number
+     * of jars.
+     *
+     * @param maximumJars The maximum number of cached jars
+     */
+    public DaemonCache(final int maximumJars) {
+        this.jars = CacheBuilder.newBuilder()
+                .maximumSize(maximumJars)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the {@link CachedJar} for the jar at the given path, loading
+     * it should an identical jar not have been loaded previously.
+     *
+     * @param jarPath The path of the jar
+     * @return The cached jar
+     * @throws IOException Should the jar fail to be hashed
+     */
+    public CachedJar get(final Path jarPath) throws IOException {
+        final HashCode hash = this.hash(jarPath.toAbsolutePath());
+        try {
+            return this.jars.get(hash, () -> {
+                final SourceSet sources = new SourceSet(this.store);
+                new JarWalker(jarPath).walk(sources);
+                return new CachedJar(sources);
+            });
+        } catch (final ExecutionException ex) {
+            throw new IOException("Failed to load " + jarPath + "!", ex.getCause());
+        }
+    }
+
+    /**
+     * Gets a human-readable summary of the cache's statistics.
+     *
+     * @return The statistics
+     */
+    public String getStats() {
+        return this.jars.size() + " jars, " + this.jars.stats() + ", classes: " + this.store;
+    }
+
+    /**
+     * Discards all of the cached jars.
+     */
+    public void invalidate() {
+        this.jars.invalidateAll();
+        this.hashes.clear();
+    }
+
+    private HashCode hash(final Path jarPath) throws IOException {
+        // Re-hashing the jar on every request would cost as much as
+        // reading it, so only do so when the file has changed
+        final File jarFile = jarPath.toFile();
+        final long size = jarFile.length();
+        final long modified = jarFile.lastModified();
+
+        final FileKey cached = this.hashes.get(jarPath);
+        if (cached != null && cached.size == size && cached.modified == modified) {
+            return cached.hash;
+        }
+
+        final HashCode hash = Files.asByteSource(jarFile).hash(Hashing.sha256());
+        this.hashes.put(jarPath, new FileKey(size, modified, hash));
+        return hash;
+    }
+
+    private static final class FileKey {
+
+        private final long size;
+        private final long modified;
+        private final HashCode hash;
+
+        private FileKey(final long size, final long modified, final HashCode hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = Objects.requireNonNull(hash);
+        }
+
+    }
+
+}
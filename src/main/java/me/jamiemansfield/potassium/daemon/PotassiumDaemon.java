@@ -0,0 +1,295 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.daemon;
+
+import com.google.common.io.BaseEncoding;
+import me.jamiemansfield.lorenz.io.writer.SrgWriter;
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.patcher.InnerClassPatcher;
+import me.jamiemansfield.potassium.tool.MinecraftClassicPatcherTool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * A long-running process, that keeps loaded jars and their mappings
+ * warm between requests - served over a loopback socket.
+ *
+ * <p>The protocol is line based, each request being a single line
+ * of space-separated arguments, and each response a single line
+ * beginning with either {@code OK} or {@code ERROR}.</p>
+ *
+ * <p>As requests write to paths of the client's choosing, the first
+ * request of each connection must be {@code AUTH <token>} - the token
+ * being written, when the daemon starts, to a file only readable by
+ * the user running it. Otherwise, the connection is closed.</p>
+ * <ul>
+ *     <li>{@code MAP <side> <jar> <srg>} - writes the mappings for the jar</li>
+ *     <li>{@code PATCH <side> <jar> <output>} - writes a patched copy of the jar</li>
+ *     <li>{@code QUERY <side> <jar> <class|owner.member>} - looks up a de-obfuscated name</li>
+ *     <li>{@code REVERSE <side> <jar> <class|owner.member>} - looks up an obfuscated name</li>
+ *     <li>{@code SEARCH <side> <jar> <prefix>} - lists the mappings with a de-obfuscated
+ *     name starting with the prefix, as space-separated {@code obf=deobf} pairs</li>
+ *     <li>{@code STATS} - reports the cache statistics</li>
+ *     <li>{@code INVALIDATE} - discards all cached jars</li>
+ *     <li>{@code SHUTDOWN} - stops the daemon</li>
+ * </ul>
+ */
+public final class PotassiumDaemon {
+
+    private final int port;
+    private final DaemonCache cache;
+    private final Path tokenFile;
+    private volatile byte[] token;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "Potassium Daemon Client");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ServerSocket server;
+
+    /**
+     * Creates a new daemon, that will listen on the given port.
+     *
+     * @param port The port
+     * @param cache The cache of loaded jars
+     * @param tokenFile The file to write the authentication token to
+     */
+    public PotassiumDaemon(final int port, final DaemonCache cache, final Path tokenFile) {
+        this.port = port;
+        this.cache = cache;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * Runs the daemon, blocking until it has been shutdown.
+     *
+     * @throws IOException Should the socket fail to be bound, or the
+     *                     token fail to be written
+     */
+    public void run() throws IOException {
+        this.token = writeToken(this.tokenFile).getBytes(StandardCharsets.UTF_8);
+        System.out.println("Wrote the authentication token to " + this.tokenFile);
+
+        try (final ServerSocket server = new ServerSocket(this.port, 50, InetAddress.getLoopbackAddress())) {
+            this.server = server;
+            System.out.println("Listening on " + server.getLocalSocketAddress());
+
+            while (!server.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (final SocketException ex) {
+                    // The server has been closed
+                    break;
+                }
+                this.executor.execute(() -> this.handle(socket));
+            }
+        } finally {
+            this.executor.shutdownNow();
+            Files.deleteIfExists(this.tokenFile);
+        }
+    }
+
+    /**
+     * Stops the daemon.
+     */
+    public void shutdown() {
+        final ServerSocket server = this.server;
+        if (server == null) return;
+        try {
+            server.close();
+        } catch (final IOException ex) {
+            System.err.println("Failed to close the daemon socket!");
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    private void handle(final Socket socket) {
+        try (final Socket client = socket;
+             final BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             final PrintWriter writer = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            if (!this.authenticate(reader.readLine())) {
+                writer.println("ERROR not authenticated");
+                return;
+            }
+            writer.println("OK authenticated");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+
+                final long start = System.nanoTime();
+                String response;
+                try {
+                    response = "OK " + this.process(line.trim().split("\\s+"));
+                } catch (final IllegalArgumentException | IOException ex) {
+                    response = "ERROR " + ex.getMessage();
+                } catch (final RuntimeException ex) {
+                    // Failures of the mapping, or patching, mustn't take the connection with them
+                    System.err.println("Failed to handle " + line + "!");
+                    ex.printStackTrace(System.err);
+                    response = "ERROR " + ex;
+                }
+                writer.println(response);
+                System.out.println(line + " (" + (System.nanoTime() - start) / 1000000 + "ms)");
+            }
+        } catch (final IOException ex) {
+            System.err.println("Lost connection to a client!");
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    private boolean authenticate(final String line) {
+        if (line == null) return false;
+        final String[] args = line.trim().split("\\s+");
+        if (args.length != 2 || !args[0].equalsIgnoreCase("AUTH")) return false;
+        return MessageDigest.isEqual(this.token, args[1].getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String process(final String[] args) throws IOException {
+        switch (args[0].toUpperCase(Locale.ROOT)) {
+            case "MAP": {
+                expectArgs(args, 4);
+                final Environment.Side side = side(args[1]);
+                final CachedJar jar = this.cache.get(jar(args[2]));
+                try (final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(Paths.get(args[3]))))) {
+                    writer.write(jar.getMappings(side));
+                }
+                return args[3];
+            }
+            case "PATCH": {
+                expectArgs(args, 4);
+                final InnerClassPatcher.Configuration configuration = side(args[1]) == Environment.Side.CLIENT ?
+                        MinecraftClassicPatcherTool.clientConfiguration() :
+                        MinecraftClassicPatcherTool.serverConfiguration();
+                InnerClassPatcher.patchJar(jar(args[2]), Paths.get(args[3]), configuration);
+                return args[3];
+            }
+            case "QUERY": {
+                expectArgs(args, 4);
+                final String name = this.cache.get(jar(args[2])).lookup(side(args[1]), args[3]);
+                return name != null ? name : args[3];
+            }
+            case "REVERSE": {
+                expectArgs(args, 4);
+                final String name = this.cache.get(jar(args[2])).getQueryIndex(side(args[1])).getObfuscatedName(args[3]);
+                return name != null ? name : args[3];
+            }
+            case "SEARCH": {
+                expectArgs(args, 4);
+                return this.cache.get(jar(args[2])).getQueryIndex(side(args[1])).findByDeobfuscatedPrefix(args[3]).stream()
+                        .map(Object::toString)
+                        .collect(Collectors.joining(" "));
+            }
+            case "STATS":
+                return this.cache.getStats();
+            case "INVALIDATE":
+                this.cache.invalidate();
+                return "invalidated";
+            case "SHUTDOWN":
+                this.shutdown();
+                return "shutting down";
+            default:
+                throw new IllegalArgumentException("Unknown command " + args[0]);
+        }
+    }
+
+    private static String writeToken(final Path tokenFile) throws IOException {
+        final byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        final String token = BaseEncoding.base16().lowerCase().encode(bytes);
+
+        // Created afresh, only readable by the owner, before the token is written
+        final Path parent = tokenFile.toAbsolutePath().getParent();
+        final boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (!Files.isDirectory(parent)) {
+            if (posix) {
+                Files.createDirectories(parent, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(parent);
+            }
+        }
+        Files.deleteIfExists(tokenFile);
+        if (posix) {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tokenFile);
+        }
+        Files.write(tokenFile, token.getBytes(StandardCharsets.UTF_8));
+        return token;
+    }
+
+    private static void expectArgs(final String[] args, final int count) {
+        if (args.length != count) {
+            throw new IllegalArgumentException(args[0] + " expects " + (count - 1) + " arguments");
+        }
+    }
+
+    private static Environment.Side side(final String side) {
+        try {
+            return Environment.Side.valueOf(side.toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown side " + side);
+        }
+    }
+
+    private static Path jar(final String path) {
+        final Path jar = Paths.get(path);
+        if (!Files.exists(jar)) {
+            throw new IllegalArgumentException(path + " does not exist");
+        }
+        return jar;
+    }
+
+}
@@ -33,11 +33,32 @@
 package me.jamiemansfield.potassium.env;
 
 import me.jamiemansfield.lorenz.MappingSet;
+import me.jamiemansfield.potassium.index.StringConstantIndex;
+import me.jamiemansfield.potassium.jar.ClassPart;
 import me.jamiemansfield.potassium.jar.SourceSet;
 import me.jamiemansfield.potassium.mapper.AbstractMapper;
+import me.jamiemansfield.potassium.mapper.BufferedMapper;
+import me.jamiemansfield.potassium.mapper.MappingAccumulator;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+import me.jamiemansfield.potassium.shard.Shard;
+import me.jamiemansfield.potassium.shard.ShardCoordinator;
+import me.jamiemansfield.potassium.timing.RunReport;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.ResourceGovernor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Represents an environment, of which can be mapped.
@@ -46,6 +67,11 @@ public abstract class Environment extends AbstractMapper {
 
     protected final SourceSet sources;
     private final List<AbstractMapper> mappers = new ArrayList<>();
+    private final List<MappingTask> tasks = new ArrayList<>();
+    private boolean configured = false;
+    private int parallelism = 1;
+    private Shard shard = Shard.ALL;
+    private ResourceGovernor governor = ResourceGovernor.shared();
 
     /**
      * Creates a new environment, from the given source set.
@@ -71,17 +97,273 @@ public abstract class Environment extends AbstractMapper {
         this.mappers.add(mapper);
     }
 
+    /**
+     * Registers a {@link MappingTask}, that will be run once all of the
+     * tasks of the given names have completed.
+     *
+     * <p>Tasks are run before the registered mappers. The mappings of each
+     * task are applied in the order the tasks were registered, regardless
+     * of the order they ran in.</p>
+     *
+     * @param name The name of the task
+     * @param action The work of the task, mapping into the given accumulator
+     * @param dependencies The names of the tasks that must complete first
+     */
+    protected void registerTask(final String name, final Consumer<MappingAccumulator> action, final String... dependencies) {
+        this.registerTask(name, EnumSet.allOf(ClassPart.class), action, dependencies);
+    }
+
+    /**
+     * Registers a {@link MappingTask}, that only reads the given parts of
+     * each class, see {@link #registerTask(String, Consumer, String...)}.
+     *
+     * @param name The name of the task
+     * @param parts The parts of each class the task reads
+     * @param action The work of the task, mapping into the given accumulator
+     * @param dependencies The names of the tasks that must complete first
+     */
+    protected void registerTask(final String name, final Set<ClassPart> parts, final Consumer<MappingAccumulator> action,
+            final String... dependencies) {
+        this.tasks.add(new MappingTask(name, new LinkedHashSet<>(Arrays.asList(dependencies)), parts, action));
+    }
+
+    /**
+     * Registers a {@link MappingTask}, that only reads the given parts of
+     * each class, and is given the mappings produced by each of its
+     * dependencies - keyed by task name.
+     *
+     * @param name The name of the task
+     * @param parts The parts of each class the task reads
+     * @param action The work of the task, mapping into the given accumulator
+     * @param dependencies The names of the tasks that must complete first
+     */
+    protected void registerTask(final String name, final Set<ClassPart> parts,
+            final BiConsumer<MappingAccumulator, Map<String, MappingTable>> action, final String... dependencies) {
+        this.tasks.add(new MappingTask(name, new LinkedHashSet<>(Arrays.asList(dependencies)), parts, action));
+    }
+
+    /**
+     * Runs the given {@link BufferedMapper}, from within a task, into
+     * the given accumulator.
+     *
+     * @param mapper The mapper
+     * @param mappings The accumulator to map into
+     */
+    protected void runMapper(final BufferedMapper mapper, final MappingAccumulator mappings) {
+        mappings.addAll(mapper.collect(this.sources));
+    }
+
+    /**
+     * Names the single class that loads a string constant matching the
+     * given query, from within a task.
+     *
+     * <p>Should no class, or more than one class, load a matching
+     * constant, then nothing is mapped - as the query can not identify
+     * the class.</p>
+     *
+     * @param mappings The accumulator to map into
+     * @param match How the query should be matched
+     * @param query The query
+     * @param deobfuscatedName The de-obfuscated name of the class
+     * @return {@code true} should the class have been named
+     */
+    protected boolean nameClassByString(final MappingAccumulator mappings, final StringConstantIndex.Match match, final String query,
+            final String deobfuscatedName) {
+        final Set<String> classes = this.sources.getIndex().getStrings().getLoadingClasses(match, query);
+        if (classes.size() != 1) {
+            System.err.println("Could not identify " + deobfuscatedName + ", " + classes.size() + " classes match \"" + query + "\"!");
+            return false;
+        }
+
+        mappings.mapClass(classes.iterator().next(), deobfuscatedName);
+        return true;
+    }
+
+    /**
+     * Gets the parts of each class needed by all of the registered
+     * tasks, and mappers, combined - configuring the environment should
+     * it not have been already.
+     *
+     * <p>Walkers that parse classes as they are read, such as the
+     * {@link me.jamiemansfield.potassium.jar.InputStreamWalker}, can be
+     * given these parts to skip the rest of each class.</p>
+     *
+     * @return The required class parts
+     */
+    @Override
+    public Set<ClassPart> getRequiredParts() {
+        this.ensureConfigured();
+        final Set<ClassPart> parts = EnumSet.noneOf(ClassPart.class);
+        this.tasks.forEach(task -> parts.addAll(task.getRequiredParts()));
+        this.mappers.forEach(mapper -> parts.addAll(mapper.getRequiredParts()));
+        return parts;
+    }
+
+    /**
+     * Sets the number of threads used to run the registered tasks,
+     * and mappers.
+     *
+     * <p>With more than one thread, independent tasks are run alongside
+     * each other, as are {@link BufferedMapper}s. Their mappings are
+     * applied in the order they were registered, so the resulting
+     * mappings are the same as those of a sequential run.</p>
+     *
+     * @param parallelism The number of threads
+     */
+    public void setParallelism(final int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the number of threads used to run the registered tasks,
+     * and mappers.
+     *
+     * @return The number of threads
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Sets the shard of classes mapped by the environment's per-class
+     * mappers - the remaining classes being mapped by other workers,
+     * see {@link ShardCoordinator}.
+     *
+     * <p>Every class is still loaded, so tasks that look across the
+     * whole jar (such as following the class hierarchy) are unaffected,
+     * and produce the same mappings in every shard.</p>
+     *
+     * @param shard The shard
+     */
+    public void setShard(final Shard shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * Gets the shard of classes mapped by the environment's per-class
+     * mappers.
+     *
+     * @return The shard
+     */
+    public Shard getShard() {
+        return this.shard;
+    }
+
+    /**
+     * Sets the {@link ResourceGovernor} limiting the number of classes
+     * mapped at once, and the number of threads used.
+     *
+     * @param governor The resource governor
+     */
+    public void setGovernor(final ResourceGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Gets the {@link ResourceGovernor} limiting the number of classes
+     * mapped at once, and the number of threads used.
+     *
+     * @return The resource governor
+     */
+    public ResourceGovernor getGovernor() {
+        return this.governor;
+    }
+
     /**
      * Maps the environment.
      */
     public void map() {
-        this.configure();
+        this.ensureConfigured();
         this.map(this.sources);
     }
 
+    private void ensureConfigured() {
+        if (this.configured) return;
+        try (final Timing timing = Timings.start("env.configure")) {
+            this.configure();
+        }
+        this.configured = true;
+    }
+
     @Override
     public void map(final SourceSet sources) {
-        this.mappers.forEach(mapper -> mapper.map(sources));
+        // Use fewer threads, should the heap already be short
+        final int parallelism = this.governor.getParallelism(this.parallelism);
+        if (parallelism > 1) {
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                this.runTasks(pool);
+                this.mapConcurrently(sources, pool);
+            } finally {
+                pool.shutdown();
+            }
+            return;
+        }
+
+        this.runTasks(Runnable::run);
+        for (int i = 0; i < this.mappers.size(); i++) {
+            final AbstractMapper mapper = this.mappers.get(i);
+            try (final Timing timing = Timings.start(phaseName(i, mapper))) {
+                if (RunReport.isEnabled() && mapper instanceof BufferedMapper) {
+                    // Collect the mappings first, so they can be counted
+                    record(mapper, ((BufferedMapper) mapper).collect(sources).freeze()).applyTo(this.mappings);
+                } else {
+                    mapper.map(sources);
+                }
+                timing.classes(sources.getClasses().size());
+            }
+        }
+    }
+
+    private void runTasks(final Executor executor) {
+        if (this.tasks.isEmpty()) return;
+        TaskScheduler.run(this.tasks, executor)
+                .forEach(mappings -> mappings.applyTo(this.mappings));
+    }
+
+    private void mapConcurrently(final SourceSet sources, final ForkJoinPool pool) {
+        final List<ForkJoinTask<MappingTable>> pending = new ArrayList<>();
+
+        for (int i = 0; i < this.mappers.size(); i++) {
+            final AbstractMapper mapper = this.mappers.get(i);
+            final String phase = phaseName(i, mapper);
+
+            if (mapper instanceof BufferedMapper) {
+                pending.add(pool.submit(() -> {
+                    try (final Timing timing = Timings.start(phase)) {
+                        timing.classes(sources.getClasses().size());
+                        return record(mapper, ((BufferedMapper) mapper).collect(sources).freeze());
+                    }
+                }));
+            } else {
+                // Other mappers write straight into the mapping set, so
+                // everything registered before them must be applied first
+                this.apply(pending);
+                try (final Timing timing = Timings.start(phase)) {
+                    mapper.map(sources);
+                    timing.classes(sources.getClasses().size());
+                }
+            }
+        }
+
+        this.apply(pending);
+    }
+
+    private void apply(final List<ForkJoinTask<MappingTable>> pending) {
+        // Apply in registration order, so later mappers win as they
+        // would have sequentially
+        pending.forEach(task -> task.join().applyTo(this.mappings));
+        pending.clear();
+    }
+
+    private static MappingTable record(final AbstractMapper mapper, final MappingTable mappings) {
+        RunReport.recordMapper(mapper.getClass().getSimpleName(), mappings.size());
+        return mappings;
+    }
+
+    private static String phaseName(final int index, final AbstractMapper mapper) {
+        return "mapper[" + index + "] " + mapper.getClass().getSimpleName();
     }
 
     public enum Side {
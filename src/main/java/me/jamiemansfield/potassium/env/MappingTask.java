@@ -0,0 +1,139 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.env;
+
+import me.jamiemansfield.potassium.jar.ClassPart;
+import me.jamiemansfield.potassium.mapper.MappingAccumulator;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Represents a unit of mapping work within an {@link Environment}, such
+ * as discovering a class or running a mapper, that may depend on other
+ * tasks having completed first.
+ */
+public final class MappingTask {
+
+    private final String name;
+    private final Set<String> dependencies;
+    private final Set<ClassPart> parts;
+    private final BiConsumer<MappingAccumulator, Map<String, MappingTable>> action;
+
+    /**
+     * Creates a new mapping task, that may read every part of a class.
+     *
+     * @param name The name of the task, unique within its environment
+     * @param dependencies The names of the tasks that must complete first
+     * @param action The work of the task, mapping into the given accumulator
+     */
+    public MappingTask(final String name, final Set<String> dependencies, final Consumer<MappingAccumulator> action) {
+        this(name, dependencies, EnumSet.allOf(ClassPart.class), action);
+    }
+
+    /**
+     * Creates a new mapping task.
+     *
+     * @param name The name of the task, unique within its environment
+     * @param dependencies The names of the tasks that must complete first
+     * @param parts The parts of each class the task reads
+     * @param action The work of the task, mapping into the given accumulator
+     */
+    public MappingTask(final String name, final Set<String> dependencies, final Set<ClassPart> parts,
+            final Consumer<MappingAccumulator> action) {
+        this(name, dependencies, parts, (mappings, results) -> action.accept(mappings));
+    }
+
+    /**
+     * Creates a new mapping task, that is given the mappings produced by
+     * each of its dependencies.
+     *
+     * @param name The name of the task, unique within its environment
+     * @param dependencies The names of the tasks that must complete first
+     * @param parts The parts of each class the task reads
+     * @param action The work of the task, mapping into the given accumulator
+     *               with the mappings of its dependencies, keyed by task name
+     */
+    public MappingTask(final String name, final Set<String> dependencies, final Set<ClassPart> parts,
+            final BiConsumer<MappingAccumulator, Map<String, MappingTable>> action) {
+        this.name = name;
+        this.dependencies = Collections.unmodifiableSet(new LinkedHashSet<>(dependencies));
+        this.parts = Collections.unmodifiableSet(EnumSet.copyOf(parts));
+        this.action = action;
+    }
+
+    /**
+     * Gets the name of the task.
+     *
+     * @return The name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the names of the tasks that must complete, before this one.
+     *
+     * @return The dependencies
+     */
+    public Set<String> getDependencies() {
+        return this.dependencies;
+    }
+
+    /**
+     * Gets the parts of each class the task reads.
+     *
+     * @return The required class parts
+     */
+    public Set<ClassPart> getRequiredParts() {
+        return this.parts;
+    }
+
+    /**
+     * Runs the task, mapping into the given {@link MappingAccumulator}.
+     *
+     * @param mappings The accumulator to map into
+     * @param results The mappings of each of the task's dependencies,
+     *                keyed by task name
+     */
+    public void run(final MappingAccumulator mappings, final Map<String, MappingTable> results) {
+        this.action.accept(mappings, results);
+    }
+
+}
@@ -32,12 +32,15 @@
 
 package me.jamiemansfield.potassium.env;
 
+import me.jamiemansfield.potassium.jar.ClassPart;
 import me.jamiemansfield.potassium.jar.SourceSet;
 import me.jamiemansfield.potassium.mapper.FieldGeneratedMapper;
+import me.jamiemansfield.potassium.mapper.MappingTable;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.Opcodes;
 
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -54,6 +57,9 @@ public class MinecraftClassicEnvironment extends Environment {
     // The Minecraft Classic client bundles some libs, they should not
     // be touched!
     private static final Set<String> PACKAGE_BLACKLIST = new HashSet<>();
+    // Discovery, and the field mappers, only look at fields
+    private static final Set<ClassPart> DISCOVERY_PARTS = EnumSet.of(ClassPart.HEADER, ClassPart.FIELDS);
+    private static final int DISCOVERY_FLAGS = ClassPart.toReaderFlags(DISCOVERY_PARTS);
 
     static {
         // Common
@@ -80,90 +86,109 @@ public class MinecraftClassicEnvironment extends Environment {
     @Override
     public void configure() {
         // Common mappers
-        this.registerMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
-            {
-                // Blacklist classes that weren't obfuscated
-                this.classBlacklist.addAll(CLASS_BLACKLIST);
-                this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
-
-                // Field mappings
-                this.descToName.put("Lcom/mojang/minecraft/level/Level;", "level");
-            }
-        }));
+        this.registerTask("common-fields", DISCOVERY_PARTS, mappings -> {
+            this.runMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
+                {
+                    // Blacklist classes that weren't obfuscated
+                    this.classBlacklist.addAll(CLASS_BLACKLIST);
+                    this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
+
+                    // Field mappings
+                    this.descToName.put("Lcom/mojang/minecraft/level/Level;", "level");
+                }
+            }), mappings);
+        });
 
         // Map the ParticleEngine class (+ container package)
-        {
+        this.registerTask("particle-engine", DISCOVERY_PARTS, mappings -> {
             // Find the ParticleEngine class
             final FieldDescFinder descFinder = new FieldDescFinder("particleEngine");
-            this.sources.get("com/mojang/minecraft/level/Level").accept(descFinder);
+            this.sources.get("com/mojang/minecraft/level/Level", DISCOVERY_FLAGS).accept(descFinder);
 
             if (descFinder.fieldDesc != null) {
                 final String particleEngineDesc = descFinder.fieldDesc;
                 final String particleEngineName = particleEngineDesc.substring(1, particleEngineDesc.length() - 1);
 
                 // Map ParticleEngine
-                this.mappings.getOrCreateClassMapping(particleEngineName)
-                        .setDeobfuscatedName("com/mojang/minecraft/particle/ParticleEngine");
+                mappings.mapClass(particleEngineName, "com/mojang/minecraft/particle/ParticleEngine");
             }
-        }
+        });
 
         if (this.side == Side.CLIENT) {
             // Map the Minecraft class
-            {
+            this.registerTask("minecraft-class", DISCOVERY_PARTS, mappings -> {
                 // Find the Minecraft class
                 final FieldDescFinder descFinder = new FieldDescFinder("minecraft");
-                this.sources.get("com/mojang/minecraft/MinecraftApplet").accept(descFinder);
+                this.sources.get("com/mojang/minecraft/MinecraftApplet", DISCOVERY_FLAGS).accept(descFinder);
 
                 if (descFinder.fieldDesc != null) {
                     final String minecraftDesc = descFinder.fieldDesc;
                     final String minecraftName = minecraftDesc.substring(1, minecraftDesc.length() - 1);
 
                     // Map the class to com.mojang.minecraft.Minecraft
-                    this.mappings.getOrCreateClassMapping(minecraftName)
-                            .setDeobfuscatedName("com/mojang/minecraft/Minecraft");
-
-                    // Map fields
-                    this.registerMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
-                        {
-                            // Blacklist classes that weren't obfuscated
-                            this.classBlacklist.addAll(CLASS_BLACKLIST);
-                            this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
-
-                            // Field mappings
-                            this.descToName.put(minecraftDesc, "minecraft");
-                        }
-                    }));
+                    mappings.mapClass(minecraftName, "com/mojang/minecraft/Minecraft");
                 }
-            }
+            });
+
+            // Map fields of the Minecraft class's type
+            this.registerTask("minecraft-fields", DISCOVERY_PARTS, (mappings, results) -> {
+                // Find the Minecraft class, as mapped by the minecraft-class task
+                final String minecraftName = obfuscatedName(results.get("minecraft-class"), "com/mojang/minecraft/Minecraft");
+                if (minecraftName == null) return;
+
+                this.runMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
+                    {
+                        // Blacklist classes that weren't obfuscated
+                        this.classBlacklist.addAll(CLASS_BLACKLIST);
+                        this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
+
+                        // Field mappings
+                        this.descToName.put("L" + minecraftName + ";", "minecraft");
+                    }
+                }), mappings);
+            }, "minecraft-class");
 
             // Field Generated Mapper
-            this.registerMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
-                {
-                    // Blacklist classes that weren't obfuscated
-                    this.classBlacklist.addAll(CLASS_BLACKLIST);
-                    this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
-
-                    // Field mappings
-                    this.descToName.put("Lcom/mojang/minecraft/MinecraftApplet;", "applet");
-                    this.descToName.put("Lcom/mojang/minecraft/player/Player;", "player");
-                }
-            }));
+            this.registerTask("client-fields", DISCOVERY_PARTS, mappings -> {
+                this.runMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
+                    {
+                        // Blacklist classes that weren't obfuscated
+                        this.classBlacklist.addAll(CLASS_BLACKLIST);
+                        this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
+
+                        // Field mappings
+                        this.descToName.put("Lcom/mojang/minecraft/MinecraftApplet;", "applet");
+                        this.descToName.put("Lcom/mojang/minecraft/player/Player;", "player");
+                    }
+                }), mappings);
+            });
         }
 
         if (this.side == Side.SERVER) {
             // Field Generated Mapper
-            this.registerMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
-                {
-                    // Blacklist classes that weren't obfuscated
-                    this.classBlacklist.addAll(CLASS_BLACKLIST);
-                    this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
+            this.registerTask("server-fields", DISCOVERY_PARTS, mappings -> {
+                this.runMapper(new FieldGeneratedMapper(this, new FieldGeneratedMapper.Configuration() {
+                    {
+                        // Blacklist classes that weren't obfuscated
+                        this.classBlacklist.addAll(CLASS_BLACKLIST);
+                        this.packageBlacklist.addAll(PACKAGE_BLACKLIST);
+
+                        // Field mappings
+                        this.descToName.put("Lcom/mojang/minecraft/server/MinecraftServer;", "server");
+                        this.descToName.put("Ljava/util/logging/Logger;", "log");
+                    }
+                }), mappings);
+            });
+        }
+    }
 
-                    // Field mappings
-                    this.descToName.put("Lcom/mojang/minecraft/server/MinecraftServer;", "server");
-                    this.descToName.put("Ljava/util/logging/Logger;", "log");
-                }
-            }));
+    private static String obfuscatedName(final MappingTable mappings, final String deobfuscatedName) {
+        for (int i = 0; i < mappings.getClassCount(); i++) {
+            if (deobfuscatedName.equals(mappings.getClassDeobfuscatedName(i))) {
+                return mappings.getClassObfuscatedName(i);
+            }
         }
+        return null;
     }
 
     private static class FieldDescFinder extends ClassVisitor {
@@ -0,0 +1,156 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.env;
+
+import me.jamiemansfield.potassium.mapper.MappingAccumulator;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+import me.jamiemansfield.potassium.timing.RunReport;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Schedules a graph of {@link MappingTask}s, running each task once
+ * all of its dependencies have completed - so tasks that don't depend
+ * on each other run alongside each other.
+ */
+public final class TaskScheduler {
+
+    /**
+     * Runs the given tasks on the given {@link Executor}, blocking until
+     * they have all completed - handing each task the mappings of its
+     * dependencies.
+     *
+     * @param tasks The tasks
+     * @param executor The executor to run the tasks on
+     * @return The mappings of each task, in the order the tasks were given
+     * @throws IllegalStateException Should a task depend on a missing task,
+     *                               or the tasks contain a cycle
+     */
+    public static List<MappingTable> run(final List<MappingTask> tasks, final Executor executor) {
+        final Map<String, CompletableFuture<MappingTable>> futures = new HashMap<>();
+        for (final MappingTask task : sort(tasks)) {
+            final CompletableFuture<?>[] dependencies = task.getDependencies().stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture[]::new);
+
+            futures.put(task.getName(), CompletableFuture.allOf(dependencies).thenApplyAsync(ignored -> {
+                // The dependencies have all completed, so this won't block
+                final Map<String, MappingTable> results = new LinkedHashMap<>();
+                task.getDependencies().forEach(dependency -> results.put(dependency, futures.get(dependency).join()));
+
+                final MappingAccumulator mappings = new MappingAccumulator();
+                try (final Timing timing = Timings.start("task " + task.getName())) {
+                    task.run(mappings, Collections.unmodifiableMap(results));
+                }
+                // Hold the finished mappings compactly, until they are applied
+                final MappingTable table = mappings.freeze();
+                RunReport.recordMapper("task " + task.getName(), table.size());
+                return table;
+            }, executor));
+        }
+
+        final List<MappingTable> results = new ArrayList<>();
+        for (final MappingTask task : tasks) {
+            try {
+                results.add(futures.get(task.getName()).join());
+            } catch (final CompletionException ex) {
+                throw new IllegalStateException("Mapping task " + task.getName() + " failed!", ex.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sorts the given tasks, so that every task comes after its
+     * dependencies - otherwise preserving their order.
+     *
+     * @param tasks The tasks
+     * @return The sorted tasks
+     */
+    static List<MappingTask> sort(final List<MappingTask> tasks) {
+        final Map<String, MappingTask> byName = new LinkedHashMap<>();
+        for (final MappingTask task : tasks) {
+            if (byName.put(task.getName(), task) != null) {
+                throw new IllegalStateException("Duplicate mapping task " + task.getName());
+            }
+        }
+
+        final Map<String, Integer> remaining = new HashMap<>();
+        final Map<String, List<MappingTask>> dependents = new HashMap<>();
+        final Deque<MappingTask> ready = new ArrayDeque<>();
+        for (final MappingTask task : tasks) {
+            for (final String dependency : task.getDependencies()) {
+                if (!byName.containsKey(dependency)) {
+                    throw new IllegalStateException("Mapping task " + task.getName() + " depends on missing task " + dependency);
+                }
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(task);
+            }
+            remaining.put(task.getName(), task.getDependencies().size());
+            if (task.getDependencies().isEmpty()) {
+                ready.add(task);
+            }
+        }
+
+        final List<MappingTask> sorted = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            final MappingTask task = ready.poll();
+            sorted.add(task);
+            for (final MappingTask dependent : dependents.getOrDefault(task.getName(), new ArrayList<>())) {
+                if (remaining.merge(dependent.getName(), -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (sorted.size() != tasks.size()) {
+            throw new IllegalStateException("Mapping tasks contain a dependency cycle!");
+        }
+        return sorted;
+    }
+
+    private TaskScheduler() {
+    }
+
+}
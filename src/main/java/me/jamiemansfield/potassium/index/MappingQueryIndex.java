@@ -0,0 +1,317 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.index;
+
+import me.jamiemansfield.lorenz.MappingSet;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An index of the mappings of a {@link MappingSet}, that can be queried
+ * in both directions.
+ *
+ * <p>Classes are named by their full internal names, fields as
+ * {@code owner.name}, and methods as {@code owner.name(descriptor)} -
+ * so the members of a class, or the classes and members of a package,
+ * share a common prefix. The names are held in sorted arrays, so
+ * lookups, and prefix queries, are binary searches.</p>
+ */
+public final class MappingQueryIndex {
+
+    private static final int MAGIC = 0x504b4d51; // PKMQ
+    private static final int VERSION = 1;
+
+    // Sorted by obfuscated name
+    private final Kind[] kinds;
+    private final String[] obfuscated;
+    private final String[] deobfuscated;
+    // Indices into the above, sorted by de-obfuscated name
+    private final int[] byDeobfuscated;
+
+    private MappingQueryIndex(final Kind[] kinds, final String[] obfuscated, final String[] deobfuscated, final int[] byDeobfuscated) {
+        this.kinds = kinds;
+        this.obfuscated = obfuscated;
+        this.deobfuscated = deobfuscated;
+        this.byDeobfuscated = byDeobfuscated;
+    }
+
+    /**
+     * Builds an index of the given {@link MappingSet}.
+     *
+     * @param mappings The mapping set
+     * @return The index
+     */
+    public static MappingQueryIndex of(final MappingSet mappings) {
+        return of(MappingTable.of(mappings));
+    }
+
+    /**
+     * Builds an index of the given {@link MappingTable}.
+     *
+     * @param table The mapping table
+     * @return The index
+     */
+    public static MappingQueryIndex of(final MappingTable table) {
+        final List<Entry> entries = new ArrayList<>(table.size());
+        for (int i = 0; i < table.getClassCount(); i++) {
+            entries.add(new Entry(Kind.CLASS, table.getClassObfuscatedName(i), table.getClassDeobfuscatedName(i)));
+        }
+        for (int i = 0; i < table.getFieldCount(); i++) {
+            final String owner = table.getFieldOwner(i);
+            entries.add(new Entry(Kind.FIELD,
+                    owner + '.' + table.getFieldObfuscatedName(i),
+                    table.mapClass(owner) + '.' + table.getFieldDeobfuscatedName(i)));
+        }
+        for (int i = 0; i < table.getMethodCount(); i++) {
+            final String owner = table.getMethodOwner(i);
+            final String desc = table.getMethodDescriptor(i);
+            entries.add(new Entry(Kind.METHOD,
+                    owner + '.' + table.getMethodObfuscatedName(i) + desc,
+                    table.mapClass(owner) + '.' + table.getMethodDeobfuscatedName(i) + table.mapDescriptor(desc)));
+        }
+        entries.sort(Comparator.comparing(Entry::getObfuscatedName));
+
+        final Kind[] kinds = entries.stream().map(Entry::getKind).toArray(Kind[]::new);
+        final String[] obfuscated = entries.stream().map(Entry::getObfuscatedName).toArray(String[]::new);
+        final String[] deobfuscated = entries.stream().map(Entry::getDeobfuscatedName).toArray(String[]::new);
+        return new MappingQueryIndex(kinds, obfuscated, deobfuscated, sortByDeobfuscated(deobfuscated));
+    }
+
+    /**
+     * Reads an index, previously written with {@link #write(DataOutputStream)}.
+     *
+     * @param in The stream to read from
+     * @return The index
+     * @throws IOException Should the index fail to be read
+     */
+    public static MappingQueryIndex read(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a mapping query index!");
+        if (in.readInt() != VERSION) throw new IOException("Unsupported mapping query index version!");
+
+        final int size = in.readInt();
+        final Kind[] kinds = new Kind[size];
+        final String[] obfuscated = new String[size];
+        final String[] deobfuscated = new String[size];
+        for (int i = 0; i < size; i++) {
+            kinds[i] = Kind.values()[in.readByte()];
+            obfuscated[i] = in.readUTF();
+            deobfuscated[i] = in.readUTF();
+        }
+        // The reverse order is cheap to rebuild, so isn't written
+        return new MappingQueryIndex(kinds, obfuscated, deobfuscated, sortByDeobfuscated(deobfuscated));
+    }
+
+    /**
+     * Writes the index to the given stream.
+     *
+     * @param out The stream to write to
+     * @throws IOException Should the index fail to be written
+     */
+    public void write(final DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(this.obfuscated.length);
+        for (int i = 0; i < this.obfuscated.length; i++) {
+            out.writeByte(this.kinds[i].ordinal());
+            out.writeUTF(this.obfuscated[i]);
+            out.writeUTF(this.deobfuscated[i]);
+        }
+    }
+
+    /**
+     * Gets the number of mappings in the index.
+     *
+     * @return The number of mappings
+     */
+    public int size() {
+        return this.obfuscated.length;
+    }
+
+    /**
+     * Gets the de-obfuscated name of the given class, or member.
+     *
+     * @param obfuscatedName The obfuscated name
+     * @return The de-obfuscated name, or {@code null} should there be
+     *         no mapping
+     */
+    public String getDeobfuscatedName(final String obfuscatedName) {
+        final int index = Arrays.binarySearch(this.obfuscated, obfuscatedName);
+        return index < 0 ? null : this.deobfuscated[index];
+    }
+
+    /**
+     * Gets the obfuscated name of the given class, or member.
+     *
+     * @param deobfuscatedName The de-obfuscated name
+     * @return The obfuscated name, or {@code null} should there be no
+     *         mapping
+     */
+    public String getObfuscatedName(final String deobfuscatedName) {
+        final int index = this.lowerBoundDeobfuscated(deobfuscatedName);
+        if (index < this.byDeobfuscated.length && this.deobfuscated[this.byDeobfuscated[index]].equals(deobfuscatedName)) {
+            return this.obfuscated[this.byDeobfuscated[index]];
+        }
+        return null;
+    }
+
+    /**
+     * Finds every mapping with an obfuscated name starting with the given
+     * prefix, in order of their obfuscated names.
+     *
+     * @param prefix The prefix
+     * @return The matching mappings
+     */
+    public List<Entry> findByObfuscatedPrefix(final String prefix) {
+        final List<Entry> found = new ArrayList<>();
+        int i = Arrays.binarySearch(this.obfuscated, prefix);
+        for (i = i < 0 ? -(i + 1) : i; i < this.obfuscated.length && this.obfuscated[i].startsWith(prefix); i++) {
+            found.add(this.entry(i));
+        }
+        return found;
+    }
+
+    /**
+     * Finds every mapping with a de-obfuscated name starting with the
+     * given prefix, in order of their de-obfuscated names - for example,
+     * every mapped class and member of a package.
+     *
+     * @param prefix The prefix
+     * @return The matching mappings
+     */
+    public List<Entry> findByDeobfuscatedPrefix(final String prefix) {
+        final List<Entry> found = new ArrayList<>();
+        for (int i = this.lowerBoundDeobfuscated(prefix);
+             i < this.byDeobfuscated.length && this.deobfuscated[this.byDeobfuscated[i]].startsWith(prefix); i++) {
+            found.add(this.entry(this.byDeobfuscated[i]));
+        }
+        return found;
+    }
+
+    private Entry entry(final int index) {
+        return new Entry(this.kinds[index], this.obfuscated[index], this.deobfuscated[index]);
+    }
+
+    private int lowerBoundDeobfuscated(final String name) {
+        int low = 0;
+        int high = this.byDeobfuscated.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (this.deobfuscated[this.byDeobfuscated[mid]].compareTo(name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] sortByDeobfuscated(final String[] deobfuscated) {
+        return IntStream.range(0, deobfuscated.length)
+                .boxed()
+                .sorted(Comparator.comparing(index -> deobfuscated[index]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * The kind of a mapping.
+     */
+    public enum Kind {
+
+        CLASS,
+        FIELD,
+        METHOD,
+        ;
+
+    }
+
+    /**
+     * A mapping, found in the index.
+     */
+    public static final class Entry {
+
+        private final Kind kind;
+        private final String obfuscatedName;
+        private final String deobfuscatedName;
+
+        Entry(final Kind kind, final String obfuscatedName, final String deobfuscatedName) {
+            this.kind = kind;
+            this.obfuscatedName = obfuscatedName;
+            this.deobfuscatedName = deobfuscatedName;
+        }
+
+        /**
+         * Gets the kind of the mapping.
+         *
+         * @return The kind
+         */
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        /**
+         * Gets the obfuscated name, see {@link MappingQueryIndex} for
+         * the form of member names.
+         *
+         * @return The obfuscated name
+         */
+        public String getObfuscatedName() {
+            return this.obfuscatedName;
+        }
+
+        /**
+         * Gets the de-obfuscated name, see {@link MappingQueryIndex} for
+         * the form of member names.
+         *
+         * @return The de-obfuscated name
+         */
+        public String getDeobfuscatedName() {
+            return this.deobfuscatedName;
+        }
+
+        @Override
+        public String toString() {
+            return this.obfuscatedName + "=" + this.deobfuscatedName;
+        }
+
+    }
+
+}
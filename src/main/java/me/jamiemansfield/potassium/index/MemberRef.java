@@ -0,0 +1,107 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.index;
+
+import java.util.Objects;
+
+/**
+ * Represents a reference to a member of a class, by its owner, name,
+ * and descriptor.
+ */
+public final class MemberRef {
+
+    private final String owner;
+    private final String name;
+    private final String desc;
+
+    /**
+     * Creates a new member reference.
+     *
+     * @param owner The internal name of the owning class
+     * @param name The name of the member
+     * @param desc The descriptor of the member
+     */
+    public MemberRef(final String owner, final String name, final String desc) {
+        this.owner = owner;
+        this.name = name;
+        this.desc = desc;
+    }
+
+    /**
+     * Gets the internal name of the member's owning class.
+     *
+     * @return The owner
+     */
+    public String getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Gets the name of the member.
+     *
+     * @return The name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the descriptor of the member.
+     *
+     * @return The descriptor
+     */
+    public String getDesc() {
+        return this.desc;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof MemberRef)) return false;
+        final MemberRef that = (MemberRef) obj;
+        return this.owner.equals(that.owner) &&
+                this.name.equals(that.name) &&
+                this.desc.equals(that.desc);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.owner, this.name, this.desc);
+    }
+
+    @Override
+    public String toString() {
+        return this.owner + '.' + this.name + this.desc;
+    }
+
+}
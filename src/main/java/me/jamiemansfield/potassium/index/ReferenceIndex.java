@@ -0,0 +1,190 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.index;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the references made from the code of each method in a
+ * source set, mapping each referenced member, or type, to the methods
+ * that refer to it.
+ *
+ * <p>Referring methods are held once in a table, with each reference
+ * holding only a compact array of indices into it.</p>
+ *
+ * @see SourceIndex
+ */
+public final class ReferenceIndex {
+
+    private final List<MemberRef> referrers;
+    private final Map<Kind, Map<String, int[]>> references;
+
+    ReferenceIndex(final List<MemberRef> referrers, final Map<Kind, Map<String, int[]>> references) {
+        this.referrers = referrers;
+        this.references = references;
+    }
+
+    /**
+     * Gets the methods that invoke the given method.
+     *
+     * @param owner The owner of the invoked method
+     * @param name The name of the invoked method
+     * @param desc The descriptor of the invoked method
+     * @return The invoking methods
+     */
+    public List<MemberRef> getInvokers(final String owner, final String name, final String desc) {
+        return this.getReferrers(Kind.INVOKE, memberKey(owner, name, desc));
+    }
+
+    /**
+     * Gets the methods that read the given field.
+     *
+     * @param owner The owner of the field
+     * @param name The name of the field
+     * @param desc The descriptor of the field
+     * @return The reading methods
+     */
+    public List<MemberRef> getReaders(final String owner, final String name, final String desc) {
+        return this.getReferrers(Kind.FIELD_GET, memberKey(owner, name, desc));
+    }
+
+    /**
+     * Gets the methods that write to the given field.
+     *
+     * @param owner The owner of the field
+     * @param name The name of the field
+     * @param desc The descriptor of the field
+     * @return The writing methods
+     */
+    public List<MemberRef> getWriters(final String owner, final String name, final String desc) {
+        return this.getReferrers(Kind.FIELD_PUT, memberKey(owner, name, desc));
+    }
+
+    /**
+     * Gets the methods that refer to the given type, by creating,
+     * casting to, checking against, or loading it.
+     *
+     * @param type The internal name of the type
+     * @return The referring methods
+     */
+    public List<MemberRef> getTypeReferrers(final String type) {
+        return this.getReferrers(Kind.TYPE, type);
+    }
+
+    private List<MemberRef> getReferrers(final Kind kind, final String key) {
+        return resolve(this.referrers, this.references.get(kind).get(key));
+    }
+
+    /**
+     * Gets a view of the referrers of the given indices.
+     *
+     * @param referrers The table of referrers
+     * @param ids The indices into the table, or null
+     * @return The referrers
+     */
+    static List<MemberRef> resolve(final List<MemberRef> referrers, final int[] ids) {
+        if (ids == null) return Collections.emptyList();
+        return new AbstractList<MemberRef>() {
+            @Override
+            public MemberRef get(final int index) {
+                return referrers.get(ids[index]);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    static String memberKey(final String owner, final String name, final String desc) {
+        return owner + '.' + name + ':' + desc;
+    }
+
+    enum Kind {
+
+        INVOKE,
+        FIELD_GET,
+        FIELD_PUT,
+        TYPE,
+        ;
+
+    }
+
+    /**
+     * A builder of {@link ReferenceIndex}s, that is fed by a single
+     * pass over a source set's classes.
+     */
+    static final class Builder {
+
+        private final List<MemberRef> referrers = new ArrayList<>();
+        private final Map<Kind, Map<String, IntList>> references = new EnumMap<>(Kind.class);
+
+        Builder() {
+            for (final Kind kind : Kind.values()) {
+                this.references.put(kind, new HashMap<>());
+            }
+        }
+
+        int addReferrer(final String owner, final String name, final String desc) {
+            this.referrers.add(new MemberRef(owner, name, desc));
+            return this.referrers.size() - 1;
+        }
+
+        void addReference(final Kind kind, final String key, final int referrer) {
+            this.references.get(kind).computeIfAbsent(key, k -> new IntList()).add(referrer);
+        }
+
+        List<MemberRef> getReferrers() {
+            return this.referrers;
+        }
+
+        ReferenceIndex build() {
+            final Map<Kind, Map<String, int[]>> references = new EnumMap<>(Kind.class);
+            this.references.forEach((kind, lists) -> {
+                final Map<String, int[]> arrays = new HashMap<>(lists.size() * 4 / 3 + 1);
+                lists.forEach((key, list) -> arrays.put(key, list.toArray()));
+                references.put(kind, arrays);
+            });
+            return new ReferenceIndex(this.referrers, references);
+        }
+
+    }
+
+}
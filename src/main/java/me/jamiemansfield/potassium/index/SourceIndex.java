@@ -0,0 +1,167 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.index;
+
+import static org.objectweb.asm.Opcodes.ASM5;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+
+import me.jamiemansfield.potassium.jar.SourceSet;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * The indexes of a {@link SourceSet}, built by a single pass over the
+ * code of all of its classes - and shared by everything that queries
+ * them.
+ *
+ * @see SourceSet#getIndex()
+ */
+public final class SourceIndex {
+
+    /**
+     * Builds the indexes of the given {@link SourceSet}.
+     *
+     * <p>Classes are scanned from their raw bytes where possible, so
+     * building the index does not require them to be parsed.</p>
+     *
+     * @param sources The source set
+     * @return The indexes
+     */
+    public static SourceIndex build(final SourceSet sources) {
+        final ReferenceIndex.Builder references = new ReferenceIndex.Builder();
+        final StringConstantIndex.Builder strings = new StringConstantIndex.Builder();
+        final Scanner scanner = new Scanner(references, strings);
+
+        try (final Timing timing = Timings.start("index.build")) {
+            for (final String className : sources.getClassNames()) {
+                final byte[] bytes = sources.getBytes(className);
+                if (bytes != null) {
+                    new ClassReader(bytes).accept(scanner, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    timing.bytes(bytes.length);
+                } else {
+                    sources.get(className).accept(scanner);
+                }
+                timing.classes(1);
+            }
+        }
+
+        return new SourceIndex(references.build(), strings.build(references.getReferrers()));
+    }
+
+    private final ReferenceIndex references;
+    private final StringConstantIndex strings;
+
+    private SourceIndex(final ReferenceIndex references, final StringConstantIndex strings) {
+        this.references = references;
+        this.strings = strings;
+    }
+
+    /**
+     * Gets the index of the members and types referred to by each method.
+     *
+     * @return The reference index
+     */
+    public ReferenceIndex getReferences() {
+        return this.references;
+    }
+
+    /**
+     * Gets the index of the string constants loaded by each method.
+     *
+     * @return The string constant index
+     */
+    public StringConstantIndex getStrings() {
+        return this.strings;
+    }
+
+    private static final class Scanner extends ClassVisitor {
+
+        private final ReferenceIndex.Builder references;
+        private final StringConstantIndex.Builder strings;
+        private String owner;
+
+        Scanner(final ReferenceIndex.Builder references, final StringConstantIndex.Builder strings) {
+            super(ASM5);
+            this.references = references;
+            this.strings = strings;
+        }
+
+        @Override
+        public void visit(final int version, final int access, final String name, final String signature, final String superName,
+                final String[] interfaces) {
+            this.owner = name;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature,
+                final String[] exceptions) {
+            final int referrer = this.references.addReferrer(this.owner, name, desc);
+
+            return new MethodVisitor(ASM5) {
+                @Override
+                public void visitMethodInsn(final int opcode, final String owner, final String name, final String desc, final boolean itf) {
+                    Scanner.this.references.addReference(ReferenceIndex.Kind.INVOKE, ReferenceIndex.memberKey(owner, name, desc), referrer);
+                }
+
+                @Override
+                public void visitFieldInsn(final int opcode, final String owner, final String name, final String desc) {
+                    final ReferenceIndex.Kind kind = opcode == GETFIELD || opcode == GETSTATIC ?
+                            ReferenceIndex.Kind.FIELD_GET :
+                            ReferenceIndex.Kind.FIELD_PUT;
+                    Scanner.this.references.addReference(kind, ReferenceIndex.memberKey(owner, name, desc), referrer);
+                }
+
+                @Override
+                public void visitTypeInsn(final int opcode, final String type) {
+                    Scanner.this.references.addReference(ReferenceIndex.Kind.TYPE, type, referrer);
+                }
+
+                @Override
+                public void visitLdcInsn(final Object cst) {
+                    if (cst instanceof String) {
+                        Scanner.this.strings.addLiteral((String) cst, referrer);
+                    } else if (cst instanceof Type && ((Type) cst).getSort() == Type.OBJECT) {
+                        Scanner.this.references.addReference(ReferenceIndex.Kind.TYPE, ((Type) cst).getInternalName(), referrer);
+                    }
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the string constants loaded by each method in a source
+ * set, mapping each literal to the methods that load it.
+ *
+ * <p>Literals are held in a sorted array, so exact and prefix queries
+ * are binary searches, and substring queries only scan the distinct
+ * literals rather than every method.</p>
+ *
+ * @see SourceIndex
+ */
+public final class StringConstantIndex {
+
+    private final List<MemberRef> referrers;
+    private final String[] literals;
+    private final int[][] loaders;
+
+    StringConstantIndex(final List<MemberRef> referrers, final String[] literals, final int[][] loaders) {
+        this.referrers = referrers;
+        this.literals = literals;
+        this.loaders = loaders;
+    }
+
+    /**
+     * Finds all of the literals that match the given query.
+     *
+     * @param match How the query should be matched
+     * @param query The query
+     * @return The matching literals, in sorted order
+     */
+    public List<String> find(final Match match, final String query) {
+        switch (match) {
+            case EXACT:
+                return Arrays.binarySearch(this.literals, query) >= 0 ?
+                        Arrays.asList(query) :
+                        new ArrayList<>();
+            case PREFIX: {
+                final List<String> found = new ArrayList<>();
+                for (int i = this.lowerBound(query); i < this.literals.length && this.literals[i].startsWith(query); i++) {
+                    found.add(this.literals[i]);
+                }
+                return found;
+            }
+            case SUBSTRING: {
+                final List<String> found = new ArrayList<>();
+                for (final String literal : this.literals) {
+                    if (literal.contains(query)) found.add(literal);
+                }
+                return found;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown match " + match);
+        }
+    }
+
+    /**
+     * Gets the methods that load the given literal.
+     *
+     * @param literal The literal
+     * @return The loading methods
+     */
+    public List<MemberRef> getLoaders(final String literal) {
+        final int index = Arrays.binarySearch(this.literals, literal);
+        return ReferenceIndex.resolve(this.referrers, index >= 0 ? this.loaders[index] : null);
+    }
+
+    /**
+     * Gets the classes that have a method loading a literal that matches
+     * the given query.
+     *
+     * @param match How the query should be matched
+     * @param query The query
+     * @return The internal names of the loading classes
+     */
+    public Set<String> getLoadingClasses(final Match match, final String query) {
+        final Set<String> classes = new LinkedHashSet<>();
+        for (final String literal : this.find(match, query)) {
+            this.getLoaders(literal).forEach(method -> classes.add(method.getOwner()));
+        }
+        return classes;
+    }
+
+    private int lowerBound(final String key) {
+        int low = 0;
+        int high = this.literals.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (this.literals[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The ways in which a query can match a literal.
+     */
+    public enum Match {
+
+        EXACT,
+        PREFIX,
+        SUBSTRING,
+        ;
+
+    }
+
+    /**
+     * A builder of {@link StringConstantIndex}s, that is fed by a single
+     * pass over a source set's classes.
+     */
+    static final class Builder {
+
+        private final Map<String, IntList> loaders = new HashMap<>();
+
+        void addLiteral(final String literal, final int referrer) {
+            this.loaders.computeIfAbsent(literal, key -> new IntList()).add(referrer);
+        }
+
+        StringConstantIndex build(final List<MemberRef> referrers) {
+            final String[] literals = this.loaders.keySet().toArray(new String[0]);
+            Arrays.sort(literals);
+
+            final int[][] loaders = new int[literals.length][];
+            for (int i = 0; i < literals.length; i++) {
+                loaders[i] = this.loaders.get(literals[i]).toArray();
+            }
+            return new StringConstantIndex(referrers, literals, loaders);
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.jar;
+
+import org.objectweb.asm.ClassReader;
+
+import java.util.Set;
+
+/**
+ * Represents a part of a class, that a consumer of a {@link SourceSet}
+ * may require to be parsed.
+ */
+public enum ClassPart {
+
+    /**
+     * The class's name, super class, interfaces, and attributes.
+     */
+    HEADER,
+    /**
+     * The class's fields.
+     */
+    FIELDS,
+    /**
+     * The class's methods, without their code.
+     */
+    METHODS,
+    /**
+     * The code of the class's methods.
+     */
+    CODE,
+    /**
+     * The debug information of the class, such as line numbers and
+     * local variable names.
+     */
+    DEBUG,
+    ;
+
+    /**
+     * Gets the {@link ClassReader} parsing flags that parse the given
+     * parts, skipping as much else as possible.
+     *
+     * <p>Stack map frames are always skipped, as they are only needed
+     * to write classes - which is never done from a {@link SourceSet}.</p>
+     *
+     * @param parts The required parts
+     * @return The parsing flags
+     */
+    public static int toReaderFlags(final Set<ClassPart> parts) {
+        int flags = ClassReader.SKIP_FRAMES;
+        if (!parts.contains(CODE)) {
+            flags |= ClassReader.SKIP_CODE;
+        }
+        if (!parts.contains(DEBUG)) {
+            flags |= ClassReader.SKIP_DEBUG;
+        }
+        return flags;
+    }
+
+}
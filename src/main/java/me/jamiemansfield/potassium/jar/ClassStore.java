@@ -0,0 +1,131 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.jar;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A content-addressed store of classes, keyed by a hash of their raw
+ * bytes, that may be shared between many {@link SourceSet}s.
+ *
+ * <p>Identical classes, such as those shared by the client and server
+ * jars, are held once - and are parsed once, regardless of how many
+ * source sets they were added to. Per-class results, such as those of
+ * a mapper, may also be stored against a class and reused, see
+ * {@link SourceSet#getResult(String, Object, Supplier)}.</p>
+ *
+ * <p>Classes are only held for as long as a source set refers to
+ * them.</p>
+ */
+public final class ClassStore {
+
+    // A 128-bit hash, as the hash alone identifies the class
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final Cache<HashCode, Stored> classes = CacheBuilder.newBuilder()
+            .weakValues()
+            .build();
+    private final LongAdder added = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Gets the number of classes currently held by the store.
+     *
+     * @return The number of unique classes
+     */
+    public long getClassCount() {
+        return this.classes.size();
+    }
+
+    /**
+     * Gets the number of classes added to the store, that were
+     * identical to a class it already held.
+     *
+     * @return The number of shared classes
+     */
+    public long getSharedCount() {
+        return this.shared.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + this.added.sum() + ", shared=" + this.shared.sum() + ", held=" + this.classes.size();
+    }
+
+    Stored intern(final byte[] bytes) {
+        this.added.increment();
+        final HashCode hash = HASH.hashBytes(bytes);
+        try {
+            final Stored created = new Stored(bytes);
+            final Stored stored = this.classes.get(hash, () -> created);
+            if (stored != created) {
+                this.shared.increment();
+            }
+            return stored;
+        } catch (final ExecutionException ex) {
+            // The loader can't fail
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * A class held by the store.
+     */
+    static final class Stored {
+
+        final byte[] bytes;
+        volatile SourceSet.Parsed parsed;
+        private final ConcurrentMap<Object, Object> results = new ConcurrentHashMap<>();
+
+        private Stored(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T getResult(final Object key, final Supplier<T> supplier) {
+            return (T) this.results.computeIfAbsent(key, k -> supplier.get());
+        }
+
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.jar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A scanner over the raw constant pool of a class file, for cheaply
+ * establishing whether a class contains any of a set of strings (such
+ * as descriptors) - without parsing the class.
+ */
+public final class ConstantPoolScanner {
+
+    private final Map<Integer, List<byte[]>> targets = new HashMap<>();
+
+    /**
+     * Creates a new constant pool scanner, looking for the given strings.
+     *
+     * @param targets The strings to look for
+     */
+    public ConstantPoolScanner(final Collection<String> targets) {
+        for (final String target : targets) {
+            // Modified UTF-8 only differs from UTF-8 for NUL and supplementary
+            // characters, neither of which appear in descriptors
+            final byte[] bytes = target.getBytes(StandardCharsets.UTF_8);
+            this.targets.computeIfAbsent(bytes.length, length -> new ArrayList<>()).add(bytes);
+        }
+    }
+
+    /**
+     * Establishes whether the constant pool of the given class contains
+     * a UTF8 entry equal to any of the strings being looked for.
+     *
+     * <p>Should the class file not be understood, this will return
+     * {@code true} - so a caller only ever skips classes that certainly
+     * cannot match.</p>
+     *
+     * @param classBytes The raw bytes of the class
+     * @return {@code true} should the class contain any of the strings
+     */
+    public boolean matches(final byte[] classBytes) {
+        if (this.targets.isEmpty()) return false;
+
+        try {
+            final int count = readUnsignedShort(classBytes, 8);
+            int offset = 10;
+
+            for (int i = 1; i < count; i++) {
+                final int tag = classBytes[offset];
+                switch (tag) {
+                    case 1: { // Utf8
+                        final int length = readUnsignedShort(classBytes, offset + 1);
+                        final List<byte[]> candidates = this.targets.get(length);
+                        if (candidates != null) {
+                            for (final byte[] candidate : candidates) {
+                                if (regionEquals(classBytes, offset + 3, candidate)) return true;
+                            }
+                        }
+                        offset += 3 + length;
+                        break;
+                    }
+                    case 3:  // Integer
+                    case 4:  // Float
+                    case 9:  // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        offset += 5;
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        offset += 9;
+                        // Takes two entries
+                        i++;
+                        break;
+                    case 7:  // Class
+                    case 8:  // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        offset += 3;
+                        break;
+                    case 15: // MethodHandle
+                        offset += 4;
+                        break;
+                    default:
+                        return true;
+                }
+            }
+            return false;
+        } catch (final ArrayIndexOutOfBoundsException ex) {
+            return true;
+        }
+    }
+
+    private static int readUnsignedShort(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static boolean regionEquals(final byte[] bytes, final int offset, final byte[] candidate) {
+        for (int i = 0; i < candidate.length; i++) {
+            if (bytes[offset + i] != candidate[i]) return false;
+        }
+        return true;
+    }
+
+}
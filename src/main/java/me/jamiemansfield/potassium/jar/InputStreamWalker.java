@@ -0,0 +1,162 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.jar;
+
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.IoBuffers;
+import me.jamiemansfield.potassium.util.ResourceGovernor;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * An implementation of {@link Walker} for walking a jar as it is read
+ * from an {@link InputStream}, such as a pipe, that can't be opened as
+ * a {@link java.util.jar.JarFile}.
+ *
+ * <p>Each class is handed to a pool of threads as soon as its entry has
+ * been read, so the classes are parsed while the rest of the jar is
+ * still arriving. Reading is held back while too many classes are
+ * waiting to be parsed, see {@link ResourceGovernor}. The stream is not
+ * closed.</p>
+ */
+public class InputStreamWalker implements Walker {
+
+    private final InputStream in;
+    private final Set<ClassPart> parts;
+    private final int parallelism;
+
+    /**
+     * Creates a new input stream walker, from the given
+     * {@link InputStream}.
+     *
+     * <p>Only the names of the classes are read as they arrive, leaving
+     * the rest to be parsed once it is needed.</p>
+     *
+     * @param in The stream of the jar
+     */
+    public InputStreamWalker(final InputStream in) {
+        this(in, EnumSet.of(ClassPart.HEADER), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new input stream walker, from the given
+     * {@link InputStream}, that parses the given parts of each class as
+     * it arrives.
+     *
+     * @param in The stream of the jar
+     * @param parts The parts of each class to parse
+     * @param parallelism The number of threads to parse with
+     */
+    public InputStreamWalker(final InputStream in, final Set<ClassPart> parts, final int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        this.in = in;
+        this.parts = EnumSet.copyOf(parts);
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void walk(final SourceSet sourceSet) {
+        final ResourceGovernor governor = ResourceGovernor.shared();
+        final ForkJoinPool pool = new ForkJoinPool(governor.getParallelism(this.parallelism));
+        final boolean parse = !EnumSet.of(ClassPart.HEADER).containsAll(this.parts);
+        final int flags = ClassPart.toReaderFlags(this.parts);
+        final LongAdder classes = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+
+        try (final Timing timing = Timings.start("jar.read")) {
+            final ZipInputStream zis = new ZipInputStream(this.in);
+            final List<Future<?>> parses = new ArrayList<>();
+
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                // I only want to get classes
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) continue;
+
+                final byte[] bytes;
+                try (final Timing inflate = Timings.start("jar.inflate")) {
+                    bytes = IoBuffers.toByteArray(zis, entry.getSize());
+                    inflate.classes(1).bytes(bytes.length);
+                }
+
+                // Entry sizes are rarely known up front in a stream, so the
+                // class is accounted for once read - holding back the next
+                final ResourceGovernor.Permit permit = governor.acquire(bytes.length);
+
+                // Parse the class, while the next entry is read
+                parses.add(pool.submit(() -> {
+                    try {
+                        final String className = new ClassReader(bytes).getClassName();
+                        sourceSet.add(className, bytes);
+                        if (parse) {
+                            sourceSet.get(className, flags);
+                        }
+                        classes.increment();
+                        bytesRead.add(bytes.length);
+                    } finally {
+                        permit.close();
+                    }
+                }));
+            }
+
+            for (final Future<?> future : parses) {
+                future.get();
+            }
+            timing.classes(classes.sum()).bytes(bytesRead.sum());
+        } catch (final IOException ex) {
+            System.err.println("Failed to read the jar stream!");
+            ex.printStackTrace(System.err);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while reading the jar!");
+        } catch (final ExecutionException ex) {
+            System.err.println("Failed to read the jar stream!");
+            ex.printStackTrace(System.err);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
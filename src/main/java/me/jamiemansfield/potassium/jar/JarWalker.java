@@ -32,15 +32,28 @@
 
 package me.jamiemansfield.potassium.jar;
 
-import com.google.common.io.ByteStreams;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.IoBuffers;
+import me.jamiemansfield.potassium.util.IoExecutors;
+import me.jamiemansfield.potassium.util.ResourceGovernor;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.tree.ClassNode;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 /**
  * An implementation of {@link Walker} for walking a jar file.
@@ -69,27 +82,88 @@ public class JarWalker implements Walker {
 
     @Override
     public void walk(final SourceSet sourceSet) {
-        try (final JarFile jarFile = new JarFile(this.jarPath.toFile())) {
-            jarFile.stream()
-                    // Filter out directories
-                    .filter(entry -> !entry.isDirectory())
-                    // I only want to get classes
-                    .filter(entry -> entry.getName().endsWith(".class"))
-                    // Now to read the class
-                    .forEach(entry -> {
-                        try (final InputStream in = jarFile.getInputStream(entry)) {
-                            final ClassReader reader = new ClassReader(ByteStreams.toByteArray(in));
-                            final ClassNode node = new ClassNode();
-                            reader.accept(node, 0);
-                            sourceSet.add(node);
-                        } catch (final IOException ex) {
-                            System.err.println("Failed to get an input stream for " + entry.getName() + "!");
-                            ex.printStackTrace(System.err);
-                        }
-                    });
+        final ExecutorService executor = IoExecutors.create("Potassium Jar Walker");
+        final ResourceGovernor governor = ResourceGovernor.shared();
+        final LongAdder classes = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final Queue<ResourceGovernor.Permit> permits = new ConcurrentLinkedQueue<>();
+
+        try (final Timing timing = Timings.start("jar.read");
+             final JarFile jarFile = new JarFile(this.jarPath.toFile())) {
+            try {
+                final List<Future<?>> reads = jarFile.stream()
+                        // Filter out directories
+                        .filter(entry -> !entry.isDirectory())
+                        // I only want to get classes
+                        .filter(entry -> entry.getName().endsWith(".class"))
+                        // Now to read the class, alongside the others
+                        .map(entry -> {
+                            // Hold back, should too much already be in flight - before
+                            // taking a thread, so the pool isn't left parked waiting
+                            final ResourceGovernor.Permit permit = governor.acquire(entry.getSize());
+                            permits.add(permit);
+                            return executor.submit(() -> this.read(jarFile, entry, permit, sourceSet, classes, bytesRead));
+                        })
+                        .collect(Collectors.toList());
+
+                for (final Future<?> read : reads) {
+                    read.get();
+                }
+                timing.classes(classes.sum()).bytes(bytesRead.sum());
+            } finally {
+                // Cancel the remaining reads, should one have failed, and
+                // wait for those in flight - before the jar is closed
+                executor.shutdownNow();
+                awaitTermination(executor);
+                // Cancelled reads never released their permits
+                permits.forEach(ResourceGovernor.Permit::close);
+            }
         } catch (final IOException ex) {
             System.err.println("Failed to read the jar file!");
             ex.printStackTrace(System.err);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while reading the jar!");
+        } catch (final ExecutionException ex) {
+            // A malformed class fails the walk, rather than leaving the
+            // source set incomplete
+            throw new IllegalStateException("Failed to read the jar file " + this.jarPath + "!", ex.getCause());
+        }
+    }
+
+    private void read(final JarFile jarFile, final JarEntry entry, final ResourceGovernor.Permit permit, final SourceSet sourceSet,
+            final LongAdder classes, final LongAdder bytesRead) {
+        try (final ResourceGovernor.Permit held = permit;
+             final InputStream in = jarFile.getInputStream(entry)) {
+            final byte[] bytes;
+            try (final Timing inflate = Timings.start("jar.inflate")) {
+                bytes = IoBuffers.toByteArray(in, entry.getSize());
+                inflate.classes(1).bytes(bytes.length);
+            }
+
+            // Parsing is left to the source set, so classes
+            // that are never looked at are never parsed
+            sourceSet.add(new ClassReader(bytes).getClassName(), bytes);
+            classes.increment();
+            bytesRead.add(bytes.length);
+        } catch (final IOException ex) {
+            System.err.println("Failed to get an input stream for " + entry.getName() + "!");
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    private static void awaitTermination(final ExecutorService executor) {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (final InterruptedException ex) {
+                // Carry on waiting, as the reads can't outlive the jar
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
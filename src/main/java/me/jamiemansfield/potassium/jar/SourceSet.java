@@ -32,21 +32,97 @@
 
 package me.jamiemansfield.potassium.jar;
 
+import me.jamiemansfield.potassium.index.SourceIndex;
+import me.jamiemansfield.potassium.timing.RunReport;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Represents a container for a set of {@link ClassNode}s.
+ *
+ * <p>Classes may be added as their raw bytes, in which case they are
+ * only parsed once they are first needed - and only as much as the
+ * caller requires, see {@link #get(String, int)}.</p>
+ *
+ * <p>A source set may be bounded, in which case only a limited number
+ * of parsed classes are held at once, the least recently used being
+ * evicted and re-parsed should they be needed again.</p>
+ *
+ * <p>A source set may instead be backed by a {@link ClassStore}, in
+ * which case classes identical to those of another source set backed
+ * by the same store are shared with it.</p>
  */
 public final class SourceSet {
 
-    private final Map<String, ClassNode> classes = new HashMap<>();
+    private final Map<String, Entry> classes = new ConcurrentHashMap<>();
+    private final Map<String, Parsed> cache;
+    private final boolean offHeap;
+    private final ClassStore store;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
+    private volatile SourceIndex index;
+
+    /**
+     * Creates a new, unbounded, source set - where every class is held
+     * once it has been parsed.
+     */
     public SourceSet() {
+        this(null);
+    }
+
+    /**
+     * Creates a new, unbounded, source set - backed by the given
+     * {@link ClassStore}.
+     *
+     * @param store The class store, or {@code null} for none
+     */
+    public SourceSet(final ClassStore store) {
+        this.cache = null;
+        this.offHeap = false;
+        this.store = store;
+    }
+
+    /**
+     * Creates a new, bounded, source set.
+     *
+     * <p>Classes added as {@link ClassNode}s can not be re-parsed, and
+     * so are always held, regardless of the bound.</p>
+     *
+     * @param maximumParsedClasses The maximum number of parsed classes held at once
+     * @param offHeap Whether the raw bytes of classes should be held off-heap
+     */
+    public SourceSet(final int maximumParsedClasses, final boolean offHeap) {
+        if (maximumParsedClasses < 1) throw new IllegalArgumentException("maximumParsedClasses must be at least 1");
+        this.cache = new LinkedHashMap<String, Parsed>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Parsed> eldest) {
+                if (this.size() > maximumParsedClasses) {
+                    SourceSet.this.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.offHeap = offHeap;
+        this.store = null;
     }
 
     /**
@@ -55,16 +131,65 @@ public final class SourceSet {
      * @param node The class node
      */
     public void add(final ClassNode node) {
-        this.classes.put(node.name, node);
+        this.classes.put(node.name, new Entry(node.name, null, new Parsed(node, 0)));
+    }
+
+    /**
+     * Adds the given class to the source set, to be parsed once it is
+     * first needed.
+     *
+     * @param className The class name
+     * @param bytes The raw bytes of the class
+     */
+    public void add(final String className, final byte[] bytes) {
+        final Object raw;
+        if (this.store != null) {
+            raw = this.store.intern(bytes);
+        } else if (this.offHeap) {
+            raw = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        } else {
+            raw = bytes;
+        }
+        this.classes.put(className, new Entry(className, raw, null));
+    }
+
+    /**
+     * Gets the names of all of the classes in the source set.
+     *
+     * @return The class names
+     */
+    public Set<String> getClassNames() {
+        return this.classes.keySet();
     }
 
     /**
-     * Gets all of the {@link ClassNode}s loaded in the source set.
+     * Gets all of the {@link ClassNode}s loaded in the source set,
+     * parsing them as they are iterated.
      *
      * @return The classes
      */
     public Collection<ClassNode> getClasses() {
-        return this.classes.values();
+        return new AbstractCollection<ClassNode>() {
+            @Override
+            public Iterator<ClassNode> iterator() {
+                return this.stream().iterator();
+            }
+
+            @Override
+            public int size() {
+                return SourceSet.this.classes.size();
+            }
+
+            @Override
+            public Stream<ClassNode> stream() {
+                return SourceSet.this.classes.keySet().stream().map(SourceSet.this::get);
+            }
+
+            @Override
+            public Stream<ClassNode> parallelStream() {
+                return SourceSet.this.classes.keySet().parallelStream().map(SourceSet.this::get);
+            }
+        };
     }
 
     /**
@@ -75,7 +200,62 @@ public final class SourceSet {
      *         the given class name
      */
     public ClassNode get(final String className) {
-        return this.classes.get(className);
+        return this.get(className, 0);
+    }
+
+    /**
+     * Gets the {@link ClassNode} of the given name, parsed with at
+     * least the parts of the class the given {@link ClassReader} flags
+     * do not skip.
+     *
+     * <p>The returned node may contain more than was asked for, should
+     * the class have previously been parsed for another caller.</p>
+     *
+     * @param className The class name
+     * @param parsingFlags The parsing flags
+     * @return The class node, or null should one not exists of
+     *         the given class name
+     * @see ClassPart#toReaderFlags(Set)
+     */
+    public ClassNode get(final String className, final int parsingFlags) {
+        final Entry entry = this.classes.get(className);
+        if (entry == null) return null;
+        return entry.getNode(parsingFlags);
+    }
+
+    /**
+     * Gets the raw bytes of the class of the given name.
+     *
+     * @param className The class name
+     * @return The raw bytes, or null should the class not exist, or
+     *         have been added as a {@link ClassNode}
+     */
+    public byte[] getBytes(final String className) {
+        final Entry entry = this.classes.get(className);
+        if (entry == null) return null;
+        return entry.getBytes();
+    }
+
+    /**
+     * Gets the result, of the given key, for the class of the given
+     * name - computing it should it not have been already.
+     *
+     * <p>Should the source set be backed by a {@link ClassStore}, the
+     * result is stored against the class's content, and so is shared
+     * by every identical class. The key must therefore identify
+     * everything, other than the class, that the result depends on.
+     * Otherwise, the result is computed every time.</p>
+     *
+     * @param className The class name
+     * @param key The key of the result
+     * @param supplier The supplier of the result
+     * @param <T> The type of the result
+     * @return The result
+     */
+    public <T> T getResult(final String className, final Object key, final Supplier<T> supplier) {
+        final Entry entry = this.classes.get(className);
+        if (entry == null || !entry.isShared()) return supplier.get();
+        return ((ClassStore.Stored) entry.raw).getResult(key, supplier);
     }
 
     /**
@@ -85,8 +265,222 @@ public final class SourceSet {
      * @param visitor The class visitor
      */
     public void accept(final ClassVisitor visitor) {
-        this.classes.values()
+        this.getClasses()
                 .forEach(node -> node.accept(visitor));
     }
 
-}
\ No newline at end of file
+    /**
+     * Gets the {@link SourceIndex} of the source set, building it should
+     * it not have been built already.
+     *
+     * <p>The index reflects the classes in the source set when it was
+     * first built.</p>
+     *
+     * @return The index
+     */
+    public SourceIndex getIndex() {
+        SourceIndex index = this.index;
+        if (index != null) return index;
+
+        synchronized (this) {
+            if (this.index == null) {
+                this.index = SourceIndex.build(this);
+            }
+            return this.index;
+        }
+    }
+
+    /**
+     * Gets the statistics of the source set's parsed classes.
+     *
+     * @return The statistics
+     */
+    public Statistics getStatistics() {
+        final int held;
+        if (this.cache != null) {
+            synchronized (this.cache) {
+                held = this.cache.size();
+            }
+        } else {
+            held = (int) this.classes.values().stream().filter(entry -> entry.current() != null).count();
+        }
+        return new Statistics(this.hits.sum(), this.misses.sum(), this.evictions.sum(), held);
+    }
+
+    private Parsed getCached(final String className) {
+        synchronized (this.cache) {
+            return this.cache.get(className);
+        }
+    }
+
+    private void putCached(final String className, final Parsed parsed) {
+        synchronized (this.cache) {
+            this.cache.put(className, parsed);
+        }
+    }
+
+    private final class Entry {
+
+        private final String name;
+        private final Object raw;
+        // Only used when unbounded, or for classes that can't be re-parsed
+        private volatile Parsed parsed;
+
+        private Entry(final String name, final Object raw, final Parsed parsed) {
+            this.name = name;
+            this.raw = raw;
+            this.parsed = parsed;
+        }
+
+        private byte[] getBytes() {
+            if (this.isShared()) {
+                return ((ClassStore.Stored) this.raw).bytes;
+            }
+            if (this.raw instanceof ByteBuffer) {
+                final ByteBuffer buffer = ((ByteBuffer) this.raw).duplicate();
+                buffer.clear();
+                final byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            }
+            return (byte[]) this.raw;
+        }
+
+        private boolean isShared() {
+            return this.raw instanceof ClassStore.Stored;
+        }
+
+        private boolean isPinned() {
+            return this.raw == null || SourceSet.this.cache == null;
+        }
+
+        private Object lock() {
+            // Shared classes are parsed once, for every source set
+            return this.isShared() ? this.raw : this;
+        }
+
+        private Parsed current() {
+            if (this.isShared()) return ((ClassStore.Stored) this.raw).parsed;
+            return this.isPinned() ? this.parsed : SourceSet.this.getCached(this.name);
+        }
+
+        private ClassNode getNode(final int parsingFlags) {
+            Parsed parsed = this.current();
+            if (parsed != null && parsed.satisfies(parsingFlags)) {
+                SourceSet.this.hits.increment();
+                return parsed.node;
+            }
+
+            synchronized (this.lock()) {
+                parsed = this.current();
+                if (parsed == null || !parsed.satisfies(parsingFlags)) {
+                    SourceSet.this.misses.increment();
+
+                    // Should the class have already been parsed, only skip
+                    // what neither caller needs
+                    final int flags = parsed == null ? parsingFlags : parsed.flags & parsingFlags;
+                    final byte[] bytes = this.getBytes();
+
+                    try (final Timing timing = Timings.start("class.parse")) {
+                        final long start = System.nanoTime();
+                        final ClassNode node = new ClassNode();
+                        new ClassReader(bytes).accept(node, flags);
+                        parsed = new Parsed(node, flags);
+                        timing.classes(1).bytes(bytes.length);
+                        RunReport.recordParse(this.name, System.nanoTime() - start, bytes.length);
+                    }
+
+                    if (this.isShared()) {
+                        ((ClassStore.Stored) this.raw).parsed = parsed;
+                    } else if (this.isPinned()) {
+                        this.parsed = parsed;
+                    } else {
+                        SourceSet.this.putCached(this.name, parsed);
+                    }
+                } else {
+                    SourceSet.this.hits.increment();
+                }
+                return parsed.node;
+            }
+        }
+
+    }
+
+    static final class Parsed {
+
+        private final ClassNode node;
+        private final int flags;
+
+        private Parsed(final ClassNode node, final int flags) {
+            this.node = node;
+            this.flags = flags;
+        }
+
+        private boolean satisfies(final int parsingFlags) {
+            // Nothing may have been skipped, that the caller doesn't skip
+            return (this.flags & ~parsingFlags) == 0;
+        }
+
+    }
+
+    /**
+     * The statistics of a source set's parsed classes.
+     */
+    public static final class Statistics {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int held;
+
+        Statistics(final long hits, final long misses, final long evictions, final int held) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.held = held;
+        }
+
+        /**
+         * Gets the number of lookups satisfied by an already parsed class.
+         *
+         * @return The number of hits
+         */
+        public long getHits() {
+            return this.hits;
+        }
+
+        /**
+         * Gets the number of lookups that required the class to be parsed.
+         *
+         * @return The number of misses
+         */
+        public long getMisses() {
+            return this.misses;
+        }
+
+        /**
+         * Gets the number of parsed classes that have been evicted.
+         *
+         * @return The number of evictions
+         */
+        public long getEvictions() {
+            return this.evictions;
+        }
+
+        /**
+         * Gets the number of parsed classes currently held.
+         *
+         * @return The number of held classes
+         */
+        public int getHeld() {
+            return this.held;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + this.hits + ", misses=" + this.misses + ", evictions=" + this.evictions + ", held=" + this.held;
+        }
+
+    }
+
+}
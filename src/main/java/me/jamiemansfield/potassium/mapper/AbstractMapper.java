@@ -33,8 +33,12 @@
 package me.jamiemansfield.potassium.mapper;
 
 import me.jamiemansfield.lorenz.MappingSet;
+import me.jamiemansfield.potassium.jar.ClassPart;
 import me.jamiemansfield.potassium.jar.SourceSet;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * Represents an object, that can map classes, fields, and methods,
  * from a given {@link SourceSet}.
@@ -59,6 +63,16 @@ public abstract class AbstractMapper {
      */
     public abstract void map(final SourceSet sources);
 
+    /**
+     * Gets the parts of each class the mapper reads, allowing the rest
+     * of the class to be skipped when it is parsed.
+     *
+     * @return The required class parts
+     */
+    public Set<ClassPart> getRequiredParts() {
+        return EnumSet.allOf(ClassPart.class);
+    }
+
     /**
      * Gets the {@link MappingSet} that the mapper is backed by.
      *
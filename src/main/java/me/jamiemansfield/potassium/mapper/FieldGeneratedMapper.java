@@ -34,12 +34,17 @@ package me.jamiemansfield.potassium.mapper;
 
 import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
 
-import me.jamiemansfield.lorenz.model.ClassMapping;
 import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.jar.ClassPart;
+import me.jamiemansfield.potassium.jar.ConstantPoolScanner;
+import me.jamiemansfield.potassium.jar.SourceSet;
 import org.objectweb.asm.tree.ClassNode;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * An implementation of {@link SimpleMapper} for generating
@@ -47,6 +52,8 @@ import java.util.Map;
  */
 public class FieldGeneratedMapper extends SimpleMapper<FieldGeneratedMapper.Configuration> {
 
+    private volatile ConstantPoolScanner scanner;
+
     /**
      * Creates a new mapper, from the given environment.
      *
@@ -58,16 +65,42 @@ public class FieldGeneratedMapper extends SimpleMapper<FieldGeneratedMapper.Conf
     }
 
     @Override
-    public void map(final ClassNode node) {
-        // Get the class mapping
-        final ClassMapping classMapping = this.mappings.getOrCreateClassMapping(node.name);
+    public Set<ClassPart> getRequiredParts() {
+        return EnumSet.of(ClassPart.HEADER, ClassPart.FIELDS);
+    }
+
+    @Override
+    protected boolean isParallelSafe() {
+        return true;
+    }
+
+    @Override
+    protected Object getResultKey() {
+        // Fields are only named by their descriptors
+        return Arrays.asList(FieldGeneratedMapper.class, new HashMap<>(this.configuration.descToName));
+    }
 
+    @Override
+    public MappingAccumulator collect(final SourceSet sources) {
+        // The configuration may have changed since the last run
+        this.scanner = new ConstantPoolScanner(this.configuration.descToName.keySet());
+        return super.collect(sources);
+    }
+
+    @Override
+    protected boolean accepts(final String className, final byte[] bytes) {
+        // Only classes with a field of one of the descriptors could match
+        return this.scanner.matches(bytes);
+    }
+
+    @Override
+    public void map(final ClassNode node, final MappingAccumulator mappings) {
+        // Class mappings are only created for classes with a matching field
         node.fields.stream()
                 .filter(fieldNode -> this.configuration.descToName.containsKey(fieldNode.desc))
                 .filter(fieldNode -> (fieldNode.access & ACC_SYNTHETIC) == 0)
                 .forEach(fieldNode ->
-                        classMapping.getOrCreateFieldMapping(fieldNode.name)
-                                .setDeobfuscatedName(this.configuration.descToName.get(fieldNode.desc))
+                        mappings.mapField(node.name, fieldNode.name, this.configuration.descToName.get(fieldNode.desc))
                 );
     }
 
@@ -0,0 +1,145 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.mapper;
+
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.index.MemberRef;
+import me.jamiemansfield.potassium.index.ReferenceIndex;
+import me.jamiemansfield.potassium.jar.ClassPart;
+import me.jamiemansfield.potassium.jar.SourceSet;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An implementation of {@link AbstractMapper} for generating mappings
+ * for methods, based on the methods they invoke.
+ *
+ * <p>Rather than scanning the code of every class, the invoking methods
+ * are looked up from the source set's {@link ReferenceIndex}.</p>
+ *
+ * <p>Ambiguous candidates are left unmapped - methods that invoke more
+ * than one of the configured methods, and methods that would share both
+ * a name and a descriptor with another candidate of the same class.</p>
+ */
+public class InvocationGeneratedMapper extends AbstractMapper implements BufferedMapper {
+
+    private final Environment environment;
+    private final Configuration configuration;
+
+    /**
+     * Creates a new mapper, from the given environment.
+     *
+     * @param environment The environment
+     * @param configuration The configuration
+     */
+    public InvocationGeneratedMapper(final Environment environment, final Configuration configuration) {
+        super(environment.mappings);
+        this.environment = environment;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public Set<ClassPart> getRequiredParts() {
+        // Everything needed comes from the index
+        return EnumSet.noneOf(ClassPart.class);
+    }
+
+    @Override
+    public void map(final SourceSet sources) {
+        this.collect(sources).applyTo(this.mappings);
+    }
+
+    @Override
+    public MappingAccumulator collect(final SourceSet sources) {
+        final MappingAccumulator accumulator = new MappingAccumulator();
+        final ReferenceIndex references = sources.getIndex().getReferences();
+
+        final Map<MemberRef, String> names = new HashMap<>();
+        final Set<MemberRef> ambiguous = new HashSet<>();
+        this.configuration.invocationToName.forEach((invoked, name) -> {
+            final MemberRef target = parse(invoked);
+            references.getInvokers(target.getOwner(), target.getName(), target.getDesc()).stream()
+                    .filter(method -> !method.getName().startsWith("<"))
+                    .filter(method -> this.environment.getShard().contains(method.getOwner()))
+                    .filter(method -> this.configuration.packageBlacklist.stream().noneMatch(method.getOwner()::startsWith))
+                    .filter(method -> !this.configuration.classBlacklist.contains(method.getOwner()))
+                    .forEach(method -> {
+                        final String existing = names.putIfAbsent(method, name);
+                        if (existing != null && !existing.equals(name)) {
+                            ambiguous.add(method);
+                        }
+                    });
+        });
+        names.keySet().removeAll(ambiguous);
+
+        // Methods of the same class can't share both a name and a descriptor
+        final Map<String, Integer> signatures = new HashMap<>();
+        names.forEach((method, name) -> signatures.merge(signature(method, name), 1, Integer::sum));
+        names.forEach((method, name) -> {
+            if (signatures.get(signature(method, name)) == 1) {
+                accumulator.mapMethod(method.getOwner(), method.getName(), method.getDesc(), name);
+            }
+        });
+
+        return accumulator;
+    }
+
+    private static String signature(final MemberRef method, final String name) {
+        return method.getOwner() + '\0' + name + '\0' + method.getDesc();
+    }
+
+    private static MemberRef parse(final String method) {
+        final int nameStart = method.lastIndexOf('.', method.indexOf('('));
+        final int descStart = method.indexOf('(');
+        if (nameStart < 0 || descStart < 0) {
+            throw new IllegalArgumentException("Invalid method reference " + method + ", expected owner.name(desc)");
+        }
+        return new MemberRef(method.substring(0, nameStart), method.substring(nameStart + 1, descStart), method.substring(descStart));
+    }
+
+    public static class Configuration extends SimpleMapper.Configuration {
+
+        /**
+         * The methods to look for invocations of, in the form
+         * {@code owner.name(desc)}, to the name given to the methods
+         * that invoke them.
+         */
+        public Map<String, String> invocationToName = new HashMap<>();
+
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.mapper;
+
+import me.jamiemansfield.lorenz.MappingSet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe buffer of mappings, that can be written to from many
+ * threads, and later applied to a {@link MappingSet}.
+ *
+ * <p>Mappings are applied in order of their obfuscated names, so the
+ * resulting {@link MappingSet} is the same regardless of the order in
+ * which the mappings were accumulated.</p>
+ */
+public final class MappingAccumulator {
+
+    // Members are keyed by their owner, name (and descriptor), separated by NUL
+    private final Map<String, String> classes = new ConcurrentHashMap<>();
+    private final Map<String, String> fields = new ConcurrentHashMap<>();
+    private final Map<String, String> methods = new ConcurrentHashMap<>();
+
+    /**
+     * Maps the given class, to the given de-obfuscated name.
+     *
+     * @param obfuscatedName The obfuscated name of the class
+     * @param deobfuscatedName The de-obfuscated name of the class
+     */
+    public void mapClass(final String obfuscatedName, final String deobfuscatedName) {
+        this.classes.put(obfuscatedName, deobfuscatedName);
+    }
+
+    /**
+     * Maps the given field, to the given de-obfuscated name.
+     *
+     * @param owner The obfuscated name of the owning class
+     * @param obfuscatedName The obfuscated name of the field
+     * @param deobfuscatedName The de-obfuscated name of the field
+     */
+    public void mapField(final String owner, final String obfuscatedName, final String deobfuscatedName) {
+        this.fields.put(owner + '\0' + obfuscatedName, deobfuscatedName);
+    }
+
+    /**
+     * Maps the given method, to the given de-obfuscated name.
+     *
+     * @param owner The obfuscated name of the owning class
+     * @param obfuscatedName The obfuscated name of the method
+     * @param descriptor The obfuscated descriptor of the method
+     * @param deobfuscatedName The de-obfuscated name of the method
+     */
+    public void mapMethod(final String owner, final String obfuscatedName, final String descriptor, final String deobfuscatedName) {
+        this.methods.put(owner + '\0' + obfuscatedName + '\0' + descriptor, deobfuscatedName);
+    }
+
+    /**
+     * Adds all of the mappings from the given accumulator, replacing
+     * any existing mappings of the same members.
+     *
+     * @param other The accumulator
+     */
+    public void addAll(final MappingAccumulator other) {
+        this.classes.putAll(other.classes);
+        this.fields.putAll(other.fields);
+        this.methods.putAll(other.methods);
+    }
+
+    /**
+     * Adds all of the mappings from the given table, replacing any
+     * existing mappings of the same members.
+     *
+     * @param table The mapping table
+     */
+    public void addAll(final MappingTable table) {
+        for (int i = 0; i < table.getClassCount(); i++) {
+            this.mapClass(table.getClassObfuscatedName(i), table.getClassDeobfuscatedName(i));
+        }
+        for (int i = 0; i < table.getFieldCount(); i++) {
+            this.mapField(table.getFieldOwner(i), table.getFieldObfuscatedName(i), table.getFieldDeobfuscatedName(i));
+        }
+        for (int i = 0; i < table.getMethodCount(); i++) {
+            this.mapMethod(table.getMethodOwner(i), table.getMethodObfuscatedName(i), table.getMethodDescriptor(i),
+                    table.getMethodDeobfuscatedName(i));
+        }
+    }
+
+    /**
+     * Establishes whether any mappings have been accumulated.
+     *
+     * @return {@code true} should there be no mappings
+     */
+    public boolean isEmpty() {
+        return this.classes.isEmpty() && this.fields.isEmpty() && this.methods.isEmpty();
+    }
+
+    /**
+     * Creates a compact, sorted, {@link MappingTable} of the accumulated
+     * mappings.
+     *
+     * @return The mapping table
+     */
+    public MappingTable freeze() {
+        final MappingTable.Builder builder = new MappingTable.Builder();
+        this.classes.forEach(builder::addClass);
+        this.fields.forEach((key, deobfName) -> {
+            final String[] parts = key.split("\0", 2);
+            builder.addField(parts[0], parts[1], deobfName);
+        });
+        this.methods.forEach((key, deobfName) -> {
+            final String[] parts = key.split("\0", 3);
+            builder.addMethod(parts[0], parts[1], parts[2], deobfName);
+        });
+        return builder.build();
+    }
+
+    /**
+     * Applies the accumulated mappings to the given {@link MappingSet}.
+     *
+     * @param mappings The mapping set
+     */
+    public void applyTo(final MappingSet mappings) {
+        this.freeze().applyTo(mappings);
+    }
+
+}
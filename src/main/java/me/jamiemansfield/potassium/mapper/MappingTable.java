@@ -0,0 +1,396 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.mapper;
+
+import me.jamiemansfield.lorenz.MappingSet;
+import me.jamiemansfield.lorenz.model.ClassMapping;
+import me.jamiemansfield.lorenz.model.FieldMapping;
+import me.jamiemansfield.lorenz.model.MethodMapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable, compact, table of mappings - held as sorted columns of
+ * names rather than as a tree of mapping objects.
+ *
+ * <p>Only classes that are renamed have a class entry, and members are
+ * sorted by their owner, so a {@link MappingSet} built from the table
+ * only contains class mappings for classes that were actually mapped.</p>
+ */
+public final class MappingTable {
+
+    /**
+     * A table without any mappings.
+     */
+    public static final MappingTable EMPTY = new Builder().build();
+
+    private static final Comparator<String[]> ROW_ORDER = (a, b) -> {
+        for (int i = 0; i < a.length - 1; i++) {
+            final int result = a[i].compareTo(b[i]);
+            if (result != 0) return result;
+        }
+        return 0;
+    };
+
+    // Class columns: obfuscated name, de-obfuscated name
+    private final String[][] classes;
+    // Field columns: owner, obfuscated name, de-obfuscated name
+    private final String[][] fields;
+    // Method columns: owner, obfuscated name, descriptor, de-obfuscated name
+    private final String[][] methods;
+
+    /**
+     * Creates a table of the mappings held by the given
+     * {@link MappingSet}.
+     *
+     * @param mappings The mapping set
+     * @return The table
+     */
+    public static MappingTable of(final MappingSet mappings) {
+        final Builder builder = new Builder();
+        mappings.getTopLevelClassMappings().forEach(mapping -> read(builder, mapping));
+        return builder.build();
+    }
+
+    private static void read(final Builder builder, final ClassMapping mapping) {
+        final String owner = mapping.getFullObfuscatedName();
+        if (!owner.equals(mapping.getFullDeobfuscatedName())) {
+            builder.addClass(owner, mapping.getFullDeobfuscatedName());
+        }
+        for (final FieldMapping field : mapping.getFieldMappings()) {
+            builder.addField(owner, field.getObfuscatedName(), field.getDeobfuscatedName());
+        }
+        for (final MethodMapping method : mapping.getMethodMappings()) {
+            builder.addMethod(owner, method.getObfuscatedName(), method.getObfuscatedDescriptor(), method.getDeobfuscatedName());
+        }
+        mapping.getInnerClassMappings().forEach(inner -> read(builder, inner));
+    }
+
+    private MappingTable(final String[][] classes, final String[][] fields, final String[][] methods) {
+        this.classes = classes;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    /**
+     * Gets the number of renamed classes in the table.
+     *
+     * @return The number of classes
+     */
+    public int getClassCount() {
+        return this.classes[0].length;
+    }
+
+    /**
+     * Gets the obfuscated name of the class at the given index.
+     *
+     * @param index The index
+     * @return The obfuscated name
+     */
+    public String getClassObfuscatedName(final int index) {
+        return this.classes[0][index];
+    }
+
+    /**
+     * Gets the de-obfuscated name of the class at the given index.
+     *
+     * @param index The index
+     * @return The de-obfuscated name
+     */
+    public String getClassDeobfuscatedName(final int index) {
+        return this.classes[1][index];
+    }
+
+    /**
+     * Gets the number of renamed fields in the table.
+     *
+     * @return The number of fields
+     */
+    public int getFieldCount() {
+        return this.fields[0].length;
+    }
+
+    /**
+     * Gets the obfuscated name of the owner of the field at the given index.
+     *
+     * @param index The index
+     * @return The obfuscated owner
+     */
+    public String getFieldOwner(final int index) {
+        return this.fields[0][index];
+    }
+
+    /**
+     * Gets the obfuscated name of the field at the given index.
+     *
+     * @param index The index
+     * @return The obfuscated name
+     */
+    public String getFieldObfuscatedName(final int index) {
+        return this.fields[1][index];
+    }
+
+    /**
+     * Gets the de-obfuscated name of the field at the given index.
+     *
+     * @param index The index
+     * @return The de-obfuscated name
+     */
+    public String getFieldDeobfuscatedName(final int index) {
+        return this.fields[2][index];
+    }
+
+    /**
+     * Gets the number of renamed methods in the table.
+     *
+     * @return The number of methods
+     */
+    public int getMethodCount() {
+        return this.methods[0].length;
+    }
+
+    /**
+     * Gets the obfuscated name of the owner of the method at the given index.
+     *
+     * @param index The index
+     * @return The obfuscated owner
+     */
+    public String getMethodOwner(final int index) {
+        return this.methods[0][index];
+    }
+
+    /**
+     * Gets the obfuscated name of the method at the given index.
+     *
+     * @param index The index
+     * @return The obfuscated name
+     */
+    public String getMethodObfuscatedName(final int index) {
+        return this.methods[1][index];
+    }
+
+    /**
+     * Gets the obfuscated descriptor of the method at the given index.
+     *
+     * @param index The index
+     * @return The obfuscated descriptor
+     */
+    public String getMethodDescriptor(final int index) {
+        return this.methods[2][index];
+    }
+
+    /**
+     * Gets the de-obfuscated name of the method at the given index.
+     *
+     * @param index The index
+     * @return The de-obfuscated name
+     */
+    public String getMethodDeobfuscatedName(final int index) {
+        return this.methods[3][index];
+    }
+
+    /**
+     * Gets the de-obfuscated name of the class of the given obfuscated
+     * name.
+     *
+     * @param obfuscatedName The obfuscated name
+     * @return The de-obfuscated name, or the obfuscated name should the
+     *         class not be renamed
+     */
+    public String mapClass(final String obfuscatedName) {
+        final int index = Arrays.binarySearch(this.classes[0], obfuscatedName);
+        return index < 0 ? obfuscatedName : this.classes[1][index];
+    }
+
+    /**
+     * Maps the class types of the given descriptor to their
+     * de-obfuscated names.
+     *
+     * @param descriptor The obfuscated descriptor
+     * @return The de-obfuscated descriptor
+     */
+    public String mapDescriptor(final String descriptor) {
+        final StringBuilder mapped = new StringBuilder(descriptor.length());
+        int start = 0;
+        for (int i = descriptor.indexOf('L'); i >= 0; i = descriptor.indexOf('L', start)) {
+            final int end = descriptor.indexOf(';', i);
+            mapped.append(descriptor, start, i + 1).append(this.mapClass(descriptor.substring(i + 1, end))).append(';');
+            start = end + 1;
+        }
+        return mapped.append(descriptor, start, descriptor.length()).toString();
+    }
+
+    /**
+     * Creates a new {@link MappingSet} of the mappings in the table,
+     * for example to write with an SRG writer.
+     *
+     * @return The mapping set
+     */
+    public MappingSet toMappingSet() {
+        final MappingSet mappings = new MappingSet();
+        this.applyTo(mappings);
+        return mappings;
+    }
+
+    /**
+     * Gets the total number of mappings in the table.
+     *
+     * @return The number of mappings
+     */
+    public int size() {
+        return this.getClassCount() + this.getFieldCount() + this.getMethodCount();
+    }
+
+    /**
+     * Applies the mappings of the table to the given {@link MappingSet}.
+     *
+     * @param mappings The mapping set
+     */
+    public void applyTo(final MappingSet mappings) {
+        for (int i = 0; i < this.getClassCount(); i++) {
+            final String obfuscatedName = this.getClassObfuscatedName(i);
+            final String deobfuscatedName = this.getClassDeobfuscatedName(i);
+            // Inner classes are named relative to their outer class
+            mappings.getOrCreateClassMapping(obfuscatedName).setDeobfuscatedName(obfuscatedName.indexOf('$') == -1 ?
+                    deobfuscatedName : deobfuscatedName.substring(deobfuscatedName.lastIndexOf('$') + 1));
+        }
+
+        // Members are sorted by owner, so each owner is only looked up once
+        ClassMapping owner = null;
+        for (int i = 0; i < this.getFieldCount(); i++) {
+            if (owner == null || !owner.getFullObfuscatedName().equals(this.getFieldOwner(i))) {
+                owner = mappings.getOrCreateClassMapping(this.getFieldOwner(i));
+            }
+            owner.getOrCreateFieldMapping(this.getFieldObfuscatedName(i))
+                    .setDeobfuscatedName(this.getFieldDeobfuscatedName(i));
+        }
+
+        owner = null;
+        for (int i = 0; i < this.getMethodCount(); i++) {
+            if (owner == null || !owner.getFullObfuscatedName().equals(this.getMethodOwner(i))) {
+                owner = mappings.getOrCreateClassMapping(this.getMethodOwner(i));
+            }
+            owner.getOrCreateMethodMapping(this.getMethodObfuscatedName(i), this.getMethodDescriptor(i))
+                    .setDeobfuscatedName(this.getMethodDeobfuscatedName(i));
+        }
+    }
+
+    /**
+     * A builder of {@link MappingTable}s.
+     *
+     * <p>Should the same class, or member, be added more than once, the
+     * last mapping added is kept.</p>
+     */
+    public static final class Builder {
+
+        private final List<String[]> classes = new ArrayList<>();
+        private final List<String[]> fields = new ArrayList<>();
+        private final List<String[]> methods = new ArrayList<>();
+
+        /**
+         * Adds a class mapping.
+         *
+         * @param obfuscatedName The obfuscated name of the class
+         * @param deobfuscatedName The de-obfuscated name of the class
+         * @return {@code this}, for chaining
+         */
+        public Builder addClass(final String obfuscatedName, final String deobfuscatedName) {
+            this.classes.add(new String[] { obfuscatedName, deobfuscatedName });
+            return this;
+        }
+
+        /**
+         * Adds a field mapping.
+         *
+         * @param owner The obfuscated name of the owning class
+         * @param obfuscatedName The obfuscated name of the field
+         * @param deobfuscatedName The de-obfuscated name of the field
+         * @return {@code this}, for chaining
+         */
+        public Builder addField(final String owner, final String obfuscatedName, final String deobfuscatedName) {
+            this.fields.add(new String[] { owner, obfuscatedName, deobfuscatedName });
+            return this;
+        }
+
+        /**
+         * Adds a method mapping.
+         *
+         * @param owner The obfuscated name of the owning class
+         * @param obfuscatedName The obfuscated name of the method
+         * @param descriptor The obfuscated descriptor of the method
+         * @param deobfuscatedName The de-obfuscated name of the method
+         * @return {@code this}, for chaining
+         */
+        public Builder addMethod(final String owner, final String obfuscatedName, final String descriptor, final String deobfuscatedName) {
+            this.methods.add(new String[] { owner, obfuscatedName, descriptor, deobfuscatedName });
+            return this;
+        }
+
+        /**
+         * Builds the table.
+         *
+         * @return The table
+         */
+        public MappingTable build() {
+            return new MappingTable(columns(this.classes, 2), columns(this.fields, 3), columns(this.methods, 4));
+        }
+
+        private static String[][] columns(final List<String[]> rows, final int width) {
+            // A stable sort keeps the last of any duplicates last
+            final String[][] sorted = rows.toArray(new String[0][]);
+            Arrays.sort(sorted, ROW_ORDER);
+
+            final List<String[]> distinct = new ArrayList<>(sorted.length);
+            for (final String[] row : sorted) {
+                if (!distinct.isEmpty() && ROW_ORDER.compare(distinct.get(distinct.size() - 1), row) == 0) {
+                    distinct.set(distinct.size() - 1, row);
+                } else {
+                    distinct.add(row);
+                }
+            }
+
+            final String[][] columns = new String[width][distinct.size()];
+            for (int i = 0; i < distinct.size(); i++) {
+                for (int column = 0; column < width; column++) {
+                    columns[column][i] = distinct.get(i)[column];
+                }
+            }
+            return columns;
+        }
+
+    }
+
+}
@@ -0,0 +1,425 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.mapper;
+
+import me.jamiemansfield.lorenz.MappingSet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Operations on {@link MappingTable}s - merging, composing, and reading
+ * them from SRG.
+ *
+ * <p>Merging walks the sorted columns of both tables together, adding
+ * the rows already in order - so building the merged table, whose sort
+ * finds a single run, takes linear time. Composing looks members up in
+ * hashed tables, and then sorts the composed table, taking
+ * {@code O(n log n)} time.</p>
+ */
+public final class MappingTables {
+
+    /**
+     * Merges the given mapping sets, see
+     * {@link #merge(MappingTable, MappingTable)}.
+     *
+     * @param first The first mapping set
+     * @param second The second mapping set
+     * @return The result of the merge
+     */
+    public static MergeResult merge(final MappingSet first, final MappingSet second) {
+        return merge(MappingTable.of(first), MappingTable.of(second));
+    }
+
+    /**
+     * Merges the given tables, taking the union of their mappings.
+     *
+     * <p>Should both tables map the same class, or member, to different
+     * names, the mapping of the first table is kept and the conflict is
+     * reported.</p>
+     *
+     * @param first The first table
+     * @param second The second table
+     * @return The result of the merge
+     */
+    public static MergeResult merge(final MappingTable first, final MappingTable second) {
+        final MappingTable.Builder builder = new MappingTable.Builder();
+        final List<Conflict> conflicts = new ArrayList<>();
+
+        // Classes
+        int i = 0;
+        int j = 0;
+        while (i < first.getClassCount() || j < second.getClassCount()) {
+            final int result = i == first.getClassCount() ? 1 : j == second.getClassCount() ? -1 :
+                    first.getClassObfuscatedName(i).compareTo(second.getClassObfuscatedName(j));
+            if (result < 0) {
+                builder.addClass(first.getClassObfuscatedName(i), first.getClassDeobfuscatedName(i));
+                i++;
+            } else if (result > 0) {
+                builder.addClass(second.getClassObfuscatedName(j), second.getClassDeobfuscatedName(j));
+                j++;
+            } else {
+                builder.addClass(first.getClassObfuscatedName(i), first.getClassDeobfuscatedName(i));
+                if (!first.getClassDeobfuscatedName(i).equals(second.getClassDeobfuscatedName(j))) {
+                    conflicts.add(new Conflict(first.getClassObfuscatedName(i), first.getClassDeobfuscatedName(i), second.getClassDeobfuscatedName(j)));
+                }
+                i++;
+                j++;
+            }
+        }
+
+        // Fields
+        i = 0;
+        j = 0;
+        while (i < first.getFieldCount() || j < second.getFieldCount()) {
+            int result = i == first.getFieldCount() ? 1 : j == second.getFieldCount() ? -1 :
+                    first.getFieldOwner(i).compareTo(second.getFieldOwner(j));
+            if (result == 0) {
+                result = first.getFieldObfuscatedName(i).compareTo(second.getFieldObfuscatedName(j));
+            }
+            if (result < 0) {
+                builder.addField(first.getFieldOwner(i), first.getFieldObfuscatedName(i), first.getFieldDeobfuscatedName(i));
+                i++;
+            } else if (result > 0) {
+                builder.addField(second.getFieldOwner(j), second.getFieldObfuscatedName(j), second.getFieldDeobfuscatedName(j));
+                j++;
+            } else {
+                builder.addField(first.getFieldOwner(i), first.getFieldObfuscatedName(i), first.getFieldDeobfuscatedName(i));
+                if (!first.getFieldDeobfuscatedName(i).equals(second.getFieldDeobfuscatedName(j))) {
+                    conflicts.add(new Conflict(first.getFieldOwner(i) + "/" + first.getFieldObfuscatedName(i),
+                            first.getFieldDeobfuscatedName(i), second.getFieldDeobfuscatedName(j)));
+                }
+                i++;
+                j++;
+            }
+        }
+
+        // Methods
+        i = 0;
+        j = 0;
+        while (i < first.getMethodCount() || j < second.getMethodCount()) {
+            int result = i == first.getMethodCount() ? 1 : j == second.getMethodCount() ? -1 :
+                    first.getMethodOwner(i).compareTo(second.getMethodOwner(j));
+            if (result == 0) {
+                result = first.getMethodObfuscatedName(i).compareTo(second.getMethodObfuscatedName(j));
+            }
+            if (result == 0) {
+                result = first.getMethodDescriptor(i).compareTo(second.getMethodDescriptor(j));
+            }
+            if (result < 0) {
+                builder.addMethod(first.getMethodOwner(i), first.getMethodObfuscatedName(i), first.getMethodDescriptor(i),
+                        first.getMethodDeobfuscatedName(i));
+                i++;
+            } else if (result > 0) {
+                builder.addMethod(second.getMethodOwner(j), second.getMethodObfuscatedName(j), second.getMethodDescriptor(j),
+                        second.getMethodDeobfuscatedName(j));
+                j++;
+            } else {
+                builder.addMethod(first.getMethodOwner(i), first.getMethodObfuscatedName(i), first.getMethodDescriptor(i),
+                        first.getMethodDeobfuscatedName(i));
+                if (!first.getMethodDeobfuscatedName(i).equals(second.getMethodDeobfuscatedName(j))) {
+                    conflicts.add(new Conflict(first.getMethodOwner(i) + "/" + first.getMethodObfuscatedName(i) + " " + first.getMethodDescriptor(i),
+                            first.getMethodDeobfuscatedName(i), second.getMethodDeobfuscatedName(j)));
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return new MergeResult(builder.build(), conflicts);
+    }
+
+    /**
+     * Composes the given mapping sets, see
+     * {@link #compose(MappingTable, MappingTable)}.
+     *
+     * @param first The mappings from A to B
+     * @param second The mappings from B to C
+     * @return The mappings from A to C
+     */
+    public static MappingTable compose(final MappingSet first, final MappingSet second) {
+        return compose(MappingTable.of(first), MappingTable.of(second));
+    }
+
+    /**
+     * Composes the given tables, such that mapping names with the result
+     * is the same as mapping them with the first table, and then the
+     * second.
+     *
+     * @param first The mappings from A to B
+     * @param second The mappings from B to C
+     * @return The mappings from A to C
+     */
+    public static MappingTable compose(final MappingTable first, final MappingTable second) {
+        final MappingTable.Builder builder = new MappingTable.Builder();
+
+        // Index the second table's members by their (B) keys
+        final Map<String, String> secondFields = new HashMap<>(second.getFieldCount() * 2);
+        for (int i = 0; i < second.getFieldCount(); i++) {
+            secondFields.put(second.getFieldOwner(i) + '\0' + second.getFieldObfuscatedName(i), second.getFieldDeobfuscatedName(i));
+        }
+        final Map<String, String> secondMethods = new HashMap<>(second.getMethodCount() * 2);
+        for (int i = 0; i < second.getMethodCount(); i++) {
+            secondMethods.put(second.getMethodOwner(i) + '\0' + second.getMethodObfuscatedName(i) + '\0' + second.getMethodDescriptor(i),
+                    second.getMethodDeobfuscatedName(i));
+        }
+
+        // Classes mapped by the first table, then by the second - keeping
+        // the (A) name of each (B) name, to re-key the second's members
+        final Map<String, String> firstSources = new HashMap<>(first.getClassCount() * 2);
+        for (int i = 0; i < first.getClassCount(); i++) {
+            final String intermediate = first.getClassDeobfuscatedName(i);
+            firstSources.putIfAbsent(intermediate, first.getClassObfuscatedName(i));
+            builder.addClass(first.getClassObfuscatedName(i), second.mapClass(intermediate));
+        }
+
+        // Classes only mapped by the second table, the first leaving
+        // them as they are
+        for (int i = 0; i < second.getClassCount(); i++) {
+            final String name = second.getClassObfuscatedName(i);
+            if (!firstSources.containsKey(name) && first.mapClass(name).equals(name)) {
+                builder.addClass(name, second.getClassDeobfuscatedName(i));
+            }
+        }
+
+        // Members of the first table are remembered by their (B) keys, to
+        // tell which members of the second table are only mapped by it
+        final Set<String> seenFields = new HashSet<>();
+        for (int i = 0; i < first.getFieldCount(); i++) {
+            final String owner = first.mapClass(first.getFieldOwner(i));
+            final String intermediate = first.getFieldDeobfuscatedName(i);
+            final String key = owner + '\0' + intermediate;
+            seenFields.add(key);
+            builder.addField(first.getFieldOwner(i), first.getFieldObfuscatedName(i), secondFields.getOrDefault(key, intermediate));
+        }
+
+        final Set<String> seenMethods = new HashSet<>();
+        for (int i = 0; i < first.getMethodCount(); i++) {
+            final String owner = first.mapClass(first.getMethodOwner(i));
+            final String intermediate = first.getMethodDeobfuscatedName(i);
+            final String descriptor = first.mapDescriptor(first.getMethodDescriptor(i));
+            final String key = owner + '\0' + intermediate + '\0' + descriptor;
+            seenMethods.add(key);
+            builder.addMethod(first.getMethodOwner(i), first.getMethodObfuscatedName(i), first.getMethodDescriptor(i),
+                    secondMethods.getOrDefault(key, intermediate));
+        }
+
+        // Members only mapped by the second table, re-keyed under their
+        // (A) owners and descriptors
+        for (int i = 0; i < second.getFieldCount(); i++) {
+            final String owner = second.getFieldOwner(i);
+            if (seenFields.contains(owner + '\0' + second.getFieldObfuscatedName(i))) continue;
+            final String source = source(first, firstSources, owner);
+            if (source == null) continue;
+            builder.addField(source, second.getFieldObfuscatedName(i), second.getFieldDeobfuscatedName(i));
+        }
+        for (int i = 0; i < second.getMethodCount(); i++) {
+            final String owner = second.getMethodOwner(i);
+            if (seenMethods.contains(owner + '\0' + second.getMethodObfuscatedName(i) + '\0' + second.getMethodDescriptor(i))) continue;
+            final String source = source(first, firstSources, owner);
+            if (source == null) continue;
+            builder.addMethod(source, second.getMethodObfuscatedName(i), sourceDescriptor(first, firstSources, second.getMethodDescriptor(i)),
+                    second.getMethodDeobfuscatedName(i));
+        }
+
+        return builder.build();
+    }
+
+    // Gets the (A) name of the given (B) class name, or null should the
+    // first table rename the only class that had it
+    private static String source(final MappingTable first, final Map<String, String> firstSources, final String intermediate) {
+        final String source = firstSources.get(intermediate);
+        if (source != null) return source;
+        return first.mapClass(intermediate).equals(intermediate) ? intermediate : null;
+    }
+
+    private static String sourceDescriptor(final MappingTable first, final Map<String, String> firstSources, final String descriptor) {
+        final StringBuilder builder = new StringBuilder(descriptor.length());
+        int i = 0;
+        while (i < descriptor.length()) {
+            final char c = descriptor.charAt(i);
+            if (c == 'L') {
+                final int end = descriptor.indexOf(';', i);
+                final String intermediate = descriptor.substring(i + 1, end);
+                final String source = source(first, firstSources, intermediate);
+                builder.append('L').append(source != null ? source : intermediate).append(';');
+                i = end + 1;
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads a table from the given SRG mappings.
+     *
+     * <p>Package mappings are ignored.</p>
+     *
+     * @param reader The reader of the SRG mappings
+     * @return The table
+     * @throws IOException Should the mappings fail to be read
+     */
+    public static MappingTable readSrg(final BufferedReader reader) throws IOException {
+        final MappingTable.Builder builder = new MappingTable.Builder();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final String[] parts = line.trim().split(" ");
+            switch (parts[0]) {
+                case "CL:":
+                    if (parts.length != 3) throw new IOException("Malformed class mapping: " + line);
+                    builder.addClass(parts[1], parts[2]);
+                    break;
+                case "FD:": {
+                    if (parts.length != 3) throw new IOException("Malformed field mapping: " + line);
+                    final int obf = parts[1].lastIndexOf('/');
+                    builder.addField(parts[1].substring(0, obf), parts[1].substring(obf + 1), parts[2].substring(parts[2].lastIndexOf('/') + 1));
+                    break;
+                }
+                case "MD:": {
+                    if (parts.length != 5) throw new IOException("Malformed method mapping: " + line);
+                    final int obf = parts[1].lastIndexOf('/');
+                    builder.addMethod(parts[1].substring(0, obf), parts[1].substring(obf + 1), parts[2], parts[3].substring(parts[3].lastIndexOf('/') + 1));
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * A conflicting mapping, found when merging.
+     */
+    public static final class Conflict {
+
+        private final String obfuscated;
+        private final String kept;
+        private final String discarded;
+
+        Conflict(final String obfuscated, final String kept, final String discarded) {
+            this.obfuscated = obfuscated;
+            this.kept = kept;
+            this.discarded = discarded;
+        }
+
+        /**
+         * Gets the obfuscated name of the conflicting class, or member.
+         *
+         * @return The obfuscated name
+         */
+        public String getObfuscatedName() {
+            return this.obfuscated;
+        }
+
+        /**
+         * Gets the de-obfuscated name that was kept, that of the first
+         * table.
+         *
+         * @return The kept name
+         */
+        public String getKeptName() {
+            return this.kept;
+        }
+
+        /**
+         * Gets the de-obfuscated name that was discarded, that of the
+         * second table.
+         *
+         * @return The discarded name
+         */
+        public String getDiscardedName() {
+            return this.discarded;
+        }
+
+        @Override
+        public String toString() {
+            return this.obfuscated + ": kept " + this.kept + ", discarded " + this.discarded;
+        }
+
+    }
+
+    /**
+     * The result of merging two tables.
+     */
+    public static final class MergeResult {
+
+        private final MappingTable table;
+        private final List<Conflict> conflicts;
+
+        /**
+         * Creates a new merge result.
+         *
+         * @param table The merged table
+         * @param conflicts The conflicts found
+         */
+        public MergeResult(final MappingTable table, final List<Conflict> conflicts) {
+            this.table = table;
+            this.conflicts = Collections.unmodifiableList(conflicts);
+        }
+
+        /**
+         * Gets the merged table.
+         *
+         * @return The table
+         */
+        public MappingTable getTable() {
+            return this.table;
+        }
+
+        /**
+         * Gets the conflicts found, in order of their obfuscated names.
+         *
+         * @return The conflicts
+         */
+        public List<Conflict> getConflicts() {
+            return this.conflicts;
+        }
+
+    }
+
+    private MappingTables() {
+    }
+
+}
@@ -33,11 +33,18 @@
 package me.jamiemansfield.potassium.mapper;
 
 import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.jar.ClassPart;
 import me.jamiemansfield.potassium.jar.SourceSet;
+import me.jamiemansfield.potassium.timing.RunReport;
+import me.jamiemansfield.potassium.util.ResourceGovernor;
 import org.objectweb.asm.tree.ClassNode;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * An abstract implementation of {@link AbstractMapper}, that provides
@@ -45,8 +52,9 @@ import java.util.Set;
  *
  * @param <C> The type of the mapper's configuration
  */
-public abstract class SimpleMapper<C extends SimpleMapper.Configuration> extends AbstractMapper {
+public abstract class SimpleMapper<C extends SimpleMapper.Configuration> extends AbstractMapper implements BufferedMapper {
 
+    protected final Environment environment;
     protected final C configuration;
 
     /**
@@ -56,27 +64,147 @@ public abstract class SimpleMapper<C extends SimpleMapper.Configuration> extends
      */
     protected SimpleMapper(final Environment environment, final C configuration) {
         super(environment.mappings);
+        this.environment = environment;
         this.configuration = configuration;
     }
 
     /**
-     * Maps the given {@link ClassNode}.
+     * Establishes whether {@link #map(ClassNode, MappingAccumulator)} is
+     * safe to call for many classes at once - that is it only reads the
+     * class it is given, and only writes to the given accumulator.
+     *
+     * <p>Parallel mappers are run across the environment's threads, see
+     * {@link Environment#setParallelism(int)}.</p>
+     *
+     * @return {@code true} should the mapper be parallel safe
+     */
+    protected boolean isParallelSafe() {
+        return false;
+    }
+
+    /**
+     * Maps the given {@link ClassNode}, directly into the environment's
+     * mappings.
+     *
+     * @param node The class node
+     * @deprecated Override {@link #map(ClassNode, MappingAccumulator)}
+     *             instead, which can be run in parallel
+     */
+    @Deprecated
+    public void map(final ClassNode node) {
+        throw new UnsupportedOperationException(this.getClass().getName() + " does not implement map(ClassNode, MappingAccumulator)");
+    }
+
+    /**
+     * Maps the given {@link ClassNode}, into the given {@link MappingAccumulator}.
+     *
+     * <p>By default this calls {@link #map(ClassNode)}, for mappers
+     * written against it - which map straight into the environment's
+     * mappings, so must not be made parallel safe.</p>
      *
      * @param node The class node
+     * @param mappings The accumulator to map into
      */
-    public abstract void map(final ClassNode node);
+    public void map(final ClassNode node, final MappingAccumulator mappings) {
+        this.map(node);
+    }
+
+    /**
+     * Establishes whether the class of the given name, and raw bytes,
+     * could possibly be mapped by this mapper - allowing classes that
+     * cannot to be skipped without being parsed.
+     *
+     * @param className The class name
+     * @param bytes The raw bytes of the class
+     * @return {@code true} should the class need mapping
+     */
+    protected boolean accepts(final String className, final byte[] bytes) {
+        return true;
+    }
+
+    /**
+     * Gets a key identifying everything, other than the class itself,
+     * that {@link #map(ClassNode, MappingAccumulator)} depends on -
+     * allowing the mappings of a class to be reused for identical
+     * classes, see {@link SourceSet#getResult(String, Object, Supplier)}.
+     *
+     * <p>Mappers that read anything but the class they are given must
+     * return {@code null}, as must mappers with a configuration that
+     * can't be compared.</p>
+     *
+     * @return The result key, or {@code null} should the mappings not
+     *         be reusable
+     */
+    protected Object getResultKey() {
+        return null;
+    }
 
     @Override
     public void map(final SourceSet sources) {
-        sources.getClasses().stream()
-                .filter(node -> this.configuration.packageBlacklist.stream().noneMatch(partial -> node.name.startsWith(partial)))
-                .filter(node -> !this.configuration.classBlacklist.contains(node.name))
-                .forEach(node -> {
-                    System.out.println("Processing " + node.name);
-                    this.map(node);
+        this.collect(sources).applyTo(this.mappings);
+    }
+
+    @Override
+    public MappingAccumulator collect(final SourceSet sources) {
+        final MappingAccumulator accumulator = new MappingAccumulator();
+        final int parallelism = this.environment.getParallelism();
+
+        if (!this.isParallelSafe() || parallelism <= 1) {
+            this.collect(sources, sources.getClassNames().stream(), accumulator);
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            // Already running on the environment's pool, so split the
+            // classes across it
+            this.collect(sources, sources.getClassNames().parallelStream(), accumulator);
+        } else {
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> this.collect(sources, sources.getClassNames().parallelStream(), accumulator)).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        return accumulator;
+    }
+
+    private void collect(final SourceSet sources, final Stream<String> classNames, final MappingAccumulator accumulator) {
+        final int parsingFlags = ClassPart.toReaderFlags(this.getRequiredParts());
+        final Object resultKey = this.getResultKey();
+        final ResourceGovernor governor = this.environment.getGovernor();
+        classNames
+                .filter(this.environment.getShard()::contains)
+                .filter(name -> this.configuration.packageBlacklist.stream().noneMatch(name::startsWith))
+                .filter(name -> !this.configuration.classBlacklist.contains(name))
+                .forEach(name -> {
+                    // Skip classes that cannot match, before they are parsed
+                    final byte[] bytes = sources.getBytes(name);
+                    if (bytes != null && !this.accepts(name, bytes)) return;
+
+                    // Bound the number of classes parsed, and mapped, at once
+                    try (final ResourceGovernor.Permit permit = governor.acquire(bytes == null ? -1 : bytes.length)) {
+                        if (resultKey == null && !RunReport.isEnabled()) {
+                            this.map(sources.get(name, parsingFlags), accumulator);
+                        } else if (resultKey == null) {
+                            // Map the class on its own, so its mappings can be counted
+                            final MappingAccumulator mappings = new MappingAccumulator();
+                            this.map(sources.get(name, parsingFlags), mappings);
+                            this.record(name, mappings.isEmpty() ? MappingTable.EMPTY : mappings.freeze(), accumulator);
+                        } else {
+                            this.record(name, sources.getResult(name, resultKey, () -> {
+                                final MappingAccumulator mappings = new MappingAccumulator();
+                                this.map(sources.get(name, parsingFlags), mappings);
+                                return mappings.isEmpty() ? MappingTable.EMPTY : mappings.freeze();
+                            }), accumulator);
+                        }
+                    }
                 });
     }
 
+    private void record(final String className, final MappingTable mappings, final MappingAccumulator accumulator) {
+        RunReport.recordMappings(className, this.getClass().getSimpleName(), mappings.size());
+        accumulator.addAll(mappings);
+    }
+
     public static class Configuration {
 
         public Set<String> packageBlacklist = new HashSet<>();
@@ -0,0 +1,205 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.match;
+
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_ANNOTATION;
+import static org.objectweb.asm.Opcodes.ACC_ENUM;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A structural fingerprint of a class, that doesn't depend on the
+ * obfuscated names of the class, or of the classes it refers to - so
+ * may be compared with the fingerprints of another version.
+ *
+ * <p>Descriptors are normalised, replacing the types of classes in the
+ * same jar with {@code ?}, while types from elsewhere (such as the JDK)
+ * are kept as they are.</p>
+ */
+public final class ClassFingerprint {
+
+    private static final Pattern OBJECT_TYPE = Pattern.compile("L([^;]+);");
+    private static final int KIND_FLAGS = ACC_INTERFACE | ACC_ABSTRACT | ACC_ENUM | ACC_ANNOTATION;
+
+    private final String name;
+    private final int kind;
+    private final String superName;
+    private final String interfaces;
+    private final int depth;
+    private final String[] fields;
+    private final String[] methods;
+    private final String[] strings;
+
+    /**
+     * Creates a new fingerprint, of the given class.
+     *
+     * @param node The class, parsed with at least its header, fields,
+     *             methods, and code
+     * @param localClasses The names of the classes in the same jar
+     * @param depth The depth of the class, in the hierarchy of the
+     *              classes in the same jar
+     */
+    public ClassFingerprint(final ClassNode node, final Set<String> localClasses, final int depth) {
+        final Function<String, String> types = type -> localClasses.contains(type) ? "?" : type;
+
+        this.name = node.name;
+        this.kind = node.access & KIND_FLAGS;
+        this.superName = node.superName == null ? "" : types.apply(node.superName);
+        this.interfaces = node.interfaces.stream()
+                .map(types)
+                .sorted()
+                .reduce("", (a, b) -> a + b + ",");
+        this.depth = depth;
+        this.fields = node.fields.stream()
+                .map(field -> shape(field.access, field.desc, types))
+                .sorted()
+                .toArray(String[]::new);
+        this.methods = node.methods.stream()
+                .map(method -> (method.name.startsWith("<") ? method.name : "") + shape(method.access, method.desc, types))
+                .sorted()
+                .toArray(String[]::new);
+        // Names are obfuscated, but string constants aren't
+        this.strings = node.methods.stream()
+                .filter(method -> method.instructions != null)
+                .flatMap(method -> Arrays.stream(method.instructions.toArray()))
+                .filter(insn -> insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof String)
+                .map(insn -> (String) ((LdcInsnNode) insn).cst)
+                .distinct()
+                .sorted()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Gets the obfuscated name of the fingerprinted class.
+     *
+     * @return The class name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the key of the candidate bucket the class belongs to. Only
+     * classes of the same bucket, and similar size, are compared.
+     *
+     * @return The bucket key
+     */
+    public String getBucket() {
+        return this.kind + "|" + this.superName + "|" + this.interfaces;
+    }
+
+    /**
+     * Gets the size band of the class, the log base 2 of its number of
+     * members - classes that have gained, or lost, a few members remain
+     * in the same, or a neighbouring, band.
+     *
+     * @return The size band
+     */
+    public int getBand() {
+        return 32 - Integer.numberOfLeadingZeros(this.fields.length + this.methods.length);
+    }
+
+    /**
+     * Scores the similarity of this fingerprint to the given fingerprint,
+     * from {@code 0} (nothing alike) to {@code 1} (identical).
+     *
+     * @param other The other fingerprint
+     * @return The similarity
+     */
+    public double similarity(final ClassFingerprint other) {
+        if (!this.getBucket().equals(other.getBucket())) return 0;
+        return 0.3 * dice(this.fields, other.fields)
+                + 0.3 * dice(this.methods, other.methods)
+                + 0.3 * dice(this.strings, other.strings)
+                + 0.1 * (this.depth == other.depth ? 1 : 0);
+    }
+
+    /**
+     * Normalises the given descriptor, replacing the types the given
+     * function maps to {@code ?}.
+     *
+     * @param desc The descriptor
+     * @param types The type normaliser
+     * @return The normalised descriptor
+     */
+    static String normalise(final String desc, final Function<String, String> types) {
+        final Matcher matcher = OBJECT_TYPE.matcher(desc);
+        final StringBuffer normalised = new StringBuffer(desc.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(normalised, Matcher.quoteReplacement("L" + types.apply(matcher.group(1)) + ";"));
+        }
+        matcher.appendTail(normalised);
+        return normalised.toString();
+    }
+
+    private static String shape(final int access, final String desc, final Function<String, String> types) {
+        return ((access & ACC_STATIC) != 0 ? "static " : "") + normalise(desc, types);
+    }
+
+    private static double dice(final String[] a, final String[] b) {
+        if (a.length == 0 && b.length == 0) return 1;
+
+        // Both are sorted, so the common elements can be counted in one pass
+        int common = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            final int result = a[i].compareTo(b[j]);
+            if (result == 0) {
+                common++;
+                i++;
+                j++;
+            } else if (result < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return 2.0 * common / (a.length + b.length);
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " " + this.getBucket() + " fields=" + Arrays.toString(this.fields) + " methods=" + Arrays.toString(this.methods)
+                + " strings=" + Arrays.toString(this.strings);
+    }
+
+}
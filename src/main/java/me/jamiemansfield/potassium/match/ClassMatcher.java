@@ -0,0 +1,352 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.match;
+
+import me.jamiemansfield.lorenz.MappingSet;
+import me.jamiemansfield.potassium.jar.ClassPart;
+import me.jamiemansfield.potassium.jar.SourceSet;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pairs the classes of two versions of a jar by their structure, using
+ * {@link ClassFingerprint}s, allowing mappings of the old version to be
+ * transferred to the new version.
+ *
+ * <p>Classes are only compared with those of the same candidate bucket,
+ * and a similar size, rather than with every class of the other
+ * version. A pair is only made when each class is the other's single
+ * best candidate, and the similarity meets the threshold.</p>
+ */
+public class ClassMatcher {
+
+    private static final int PARSING_FLAGS = ClassPart.toReaderFlags(EnumSet.of(ClassPart.HEADER, ClassPart.FIELDS, ClassPart.METHODS, ClassPart.CODE));
+
+    private final SourceSet oldSources;
+    private final SourceSet newSources;
+    private double threshold = 0.8;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private SortedMap<String, String> pairs;
+
+    /**
+     * Creates a new class matcher, between the given versions.
+     *
+     * @param oldSources The old version
+     * @param newSources The new version
+     */
+    public ClassMatcher(final SourceSet oldSources, final SourceSet newSources) {
+        this.oldSources = oldSources;
+        this.newSources = newSources;
+    }
+
+    /**
+     * Sets the minimum similarity for a pair of classes to be matched.
+     *
+     * @param threshold The threshold, from {@code 0} to {@code 1}
+     * @return {@code this}, for chaining
+     */
+    public ClassMatcher setThreshold(final double threshold) {
+        if (threshold < 0 || threshold > 1) throw new IllegalArgumentException("threshold must be between 0 and 1");
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to fingerprint, and score, the
+     * classes.
+     *
+     * @param parallelism The number of threads
+     * @return {@code this}, for chaining
+     */
+    public ClassMatcher setParallelism(final int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Pairs the classes of the old version, with those of the new
+     * version.
+     *
+     * @return The obfuscated names of the new classes, by the obfuscated
+     *         names of the old classes
+     */
+    public SortedMap<String, String> match() {
+        if (this.pairs != null) return this.pairs;
+
+        final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try (final Timing timing = Timings.start("match.classes")) {
+            final List<ClassFingerprint> oldPrints = pool.submit(() -> fingerprint(this.oldSources)).join();
+            final List<ClassFingerprint> newPrints = pool.submit(() -> fingerprint(this.newSources)).join();
+
+            // Bucket the new classes, by their bucket and size band
+            final Map<String, List<ClassFingerprint>> buckets = newPrints.stream()
+                    .collect(Collectors.groupingBy(print -> print.getBucket() + "#" + print.getBand()));
+
+            // Score every old class against its candidates, keeping
+            // those that meet the threshold
+            final List<Candidate> candidates = pool.submit(() -> oldPrints.parallelStream()
+                    .flatMap(oldPrint -> {
+                        final List<Candidate> scored = new ArrayList<>();
+                        for (int band = oldPrint.getBand() - 1; band <= oldPrint.getBand() + 1; band++) {
+                            for (final ClassFingerprint newPrint : buckets.getOrDefault(oldPrint.getBucket() + "#" + band, Collections.emptyList())) {
+                                final double score = oldPrint.similarity(newPrint);
+                                if (score >= this.threshold) {
+                                    scored.add(new Candidate(oldPrint.getName(), newPrint.getName(), score));
+                                }
+                            }
+                        }
+                        return scored.stream();
+                    })
+                    .collect(Collectors.toList())).join();
+
+            final Map<String, Candidate> bestForOld = best(candidates, candidate -> candidate.oldName);
+            final Map<String, Candidate> bestForNew = best(candidates, candidate -> candidate.newName);
+
+            final SortedMap<String, String> pairs = new TreeMap<>();
+            bestForOld.forEach((oldName, candidate) -> {
+                if (candidate != null && bestForNew.get(candidate.newName) == candidate) {
+                    pairs.put(oldName, candidate.newName);
+                }
+            });
+            timing.classes(oldPrints.size() + newPrints.size());
+            this.pairs = Collections.unmodifiableSortedMap(pairs);
+        } finally {
+            pool.shutdown();
+        }
+        return this.pairs;
+    }
+
+    /**
+     * Transfers the given mappings, of the old version, to the new
+     * version.
+     *
+     * <p>Members are paired, within each pair of classes, by their
+     * descriptors - members sharing a descriptor are paired in the order
+     * they were declared, and only when both classes have as many of
+     * them.</p>
+     *
+     * @param oldMappings The mappings of the old version
+     * @return The mappings of the new version
+     */
+    public MappingSet transfer(final MappingSet oldMappings) {
+        final SortedMap<String, String> pairs = this.match();
+        final Set<String> newPaired = new HashSet<>(pairs.values());
+        final Function<String, String> oldTypes = type -> this.oldSources.getClassNames().contains(type) ? pairs.getOrDefault(type, "?") : type;
+        final Function<String, String> newTypes = type -> this.newSources.getClassNames().contains(type) && !newPaired.contains(type) ? "?" : type;
+
+        final MappingTable old = MappingTable.of(oldMappings);
+        final MappingTable.Builder builder = new MappingTable.Builder();
+
+        for (int i = 0; i < old.getClassCount(); i++) {
+            final String newName = pairs.get(old.getClassObfuscatedName(i));
+            if (newName != null) {
+                builder.addClass(newName, old.getClassDeobfuscatedName(i));
+            }
+        }
+
+        final Map<String, MemberPairs> members = new HashMap<>();
+        final Function<String, MemberPairs> memberPairs = oldOwner -> members.computeIfAbsent(oldOwner, owner ->
+                new MemberPairs(this.oldSources.get(owner, PARSING_FLAGS), this.newSources.get(pairs.get(owner), PARSING_FLAGS), oldTypes, newTypes));
+
+        for (int i = 0; i < old.getFieldCount(); i++) {
+            final String newOwner = pairs.get(old.getFieldOwner(i));
+            if (newOwner == null) continue;
+            // Field mappings have no descriptor, so cover every field of the name
+            for (final String newName : memberPairs.apply(old.getFieldOwner(i)).getFieldNames(old.getFieldObfuscatedName(i))) {
+                builder.addField(newOwner, newName, old.getFieldDeobfuscatedName(i));
+            }
+        }
+
+        for (int i = 0; i < old.getMethodCount(); i++) {
+            final String newOwner = pairs.get(old.getMethodOwner(i));
+            if (newOwner == null) continue;
+            final String newMethod = memberPairs.apply(old.getMethodOwner(i)).methods.get(old.getMethodObfuscatedName(i) + old.getMethodDescriptor(i));
+            if (newMethod != null) {
+                final int split = newMethod.indexOf('(');
+                builder.addMethod(newOwner, newMethod.substring(0, split), newMethod.substring(split), old.getMethodDeobfuscatedName(i));
+            }
+        }
+
+        final MappingSet mappings = new MappingSet();
+        builder.build().applyTo(mappings);
+        return mappings;
+    }
+
+    private static List<ClassFingerprint> fingerprint(final SourceSet sources) {
+        final Set<String> localClasses = sources.getClassNames();
+
+        // Headers are needed for the whole hierarchy first, to find depths
+        final Map<String, String> superNames = localClasses.parallelStream()
+                .map(name -> sources.get(name, PARSING_FLAGS))
+                .filter(node -> node.superName != null)
+                .collect(Collectors.toConcurrentMap(node -> node.name, node -> node.superName));
+
+        return localClasses.parallelStream()
+                .map(name -> new ClassFingerprint(sources.get(name, PARSING_FLAGS), localClasses, depth(name, superNames)))
+                .collect(Collectors.toList());
+    }
+
+    private static int depth(final String name, final Map<String, String> superNames) {
+        int depth = 0;
+        for (String current = superNames.get(name); current != null && depth < superNames.size(); current = superNames.get(current)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private static Map<String, Candidate> best(final List<Candidate> candidates, final Function<Candidate, String> key) {
+        // A class with more than one best candidate is ambiguous, so is
+        // left unpaired
+        final Map<String, Candidate> best = new HashMap<>();
+        final Set<String> ambiguous = new HashSet<>();
+        for (final Candidate candidate : candidates) {
+            final String name = key.apply(candidate);
+            final Candidate current = best.get(name);
+            if (current == null || candidate.score > current.score) {
+                best.put(name, candidate);
+                ambiguous.remove(name);
+            } else if (candidate.score == current.score) {
+                ambiguous.add(name);
+            }
+        }
+        ambiguous.forEach(name -> best.put(name, null));
+        return best;
+    }
+
+    private static final class Candidate {
+
+        private final String oldName;
+        private final String newName;
+        private final double score;
+
+        private Candidate(final String oldName, final String newName, final double score) {
+            this.oldName = oldName;
+            this.newName = newName;
+            this.score = score;
+        }
+
+    }
+
+    private static final class MemberPairs {
+
+        // Old name and descriptor -> new name and descriptor, as fields
+        // may share a name where their descriptors differ
+        private final Map<String, String> fields = new HashMap<>();
+        // Old name and descriptor -> new name and descriptor
+        private final Map<String, String> methods = new HashMap<>();
+
+        private MemberPairs(final ClassNode oldNode, final ClassNode newNode,
+                final Function<String, String> oldTypes, final Function<String, String> newTypes) {
+            pair(
+                    group(oldNode.fields, field -> ClassFingerprint.normalise(field.desc, oldTypes), MemberPairs::key),
+                    group(newNode.fields, field -> ClassFingerprint.normalise(field.desc, newTypes), MemberPairs::key),
+                    this.fields
+            );
+            pair(
+                    group(oldNode.methods, method -> special(method) + ClassFingerprint.normalise(method.desc, oldTypes), MemberPairs::key),
+                    group(newNode.methods, method -> special(method) + ClassFingerprint.normalise(method.desc, newTypes), MemberPairs::key),
+                    this.methods
+            );
+        }
+
+        private Set<String> getFieldNames(final String oldName) {
+            final Set<String> newNames = new LinkedHashSet<>();
+            this.fields.forEach((oldField, newField) -> {
+                if (oldField.substring(0, oldField.indexOf('.')).equals(oldName)) {
+                    newNames.add(newField.substring(0, newField.indexOf('.')));
+                }
+            });
+            return newNames;
+        }
+
+        private static String key(final FieldNode field) {
+            // Field names can't contain a dot
+            return field.name + '.' + field.desc;
+        }
+
+        private static String key(final MethodNode method) {
+            return method.name + method.desc;
+        }
+
+        private static String special(final MethodNode method) {
+            // Constructors, and initialisers, are never renamed
+            return method.name.startsWith("<") ? method.name : "";
+        }
+
+        private static <T> Map<String, List<String>> group(final List<T> members, final Function<T, String> shape, final Function<T, String> name) {
+            // Members are kept in the order they were declared
+            final Map<String, List<String>> groups = new HashMap<>();
+            for (final T member : members) {
+                groups.computeIfAbsent(shape.apply(member), key -> new ArrayList<>()).add(name.apply(member));
+            }
+            return groups;
+        }
+
+        private static void pair(final Map<String, List<String>> oldMembers, final Map<String, List<String>> newMembers,
+                final Map<String, String> pairs) {
+            // Members of the same shape are paired in declaration order,
+            // should both classes have the same number of them
+            oldMembers.forEach((shape, oldNames) -> {
+                final List<String> newNames = newMembers.get(shape);
+                if (newNames != null && newNames.size() == oldNames.size()) {
+                    for (int i = 0; i < oldNames.size(); i++) {
+                        pairs.put(oldNames.get(i), newNames.get(i));
+                    }
+                }
+            });
+        }
+
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.patcher;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * An immutable, pre-compiled form of a {@link InnerClassPatcher.Configuration}.
+ *
+ * <p>The patched classes are held in a sorted table, fronted by a bitmap
+ * of their name hashes - so the vast majority of classes, which are not
+ * patched, are turned away by a single probe. The attributes of each
+ * patched class are built ahead of time.</p>
+ */
+public final class CompiledConfiguration {
+
+    private static final InnerClassPatcher.InnerClassConfiguration[] NO_INNER_CLASSES =
+            new InnerClassPatcher.InnerClassConfiguration[0];
+
+    /**
+     * Compiles the given patcher configuration.
+     *
+     * @param configuration The patcher configuration
+     * @return The compiled configuration
+     */
+    public static CompiledConfiguration of(final InnerClassPatcher.Configuration configuration) {
+        final TreeSet<String> targets = new TreeSet<>();
+        targets.addAll(configuration.innerConfigs.keySet());
+        targets.addAll(configuration.outerConfig.keySet());
+        return new CompiledConfiguration(targets.toArray(new String[0]), configuration.innerConfigs, configuration.outerConfig);
+    }
+
+    private final String[] targets;
+    private final InnerClassPatcher.InnerClassConfiguration[][] innerClasses;
+    private final InnerClassPatcher.OuterClassConfiguration[] outerClasses;
+    private final long[] bitmap;
+    private final int mask;
+
+    private CompiledConfiguration(final String[] targets,
+            final Map<String, List<InnerClassPatcher.InnerClassConfiguration>> innerConfigs,
+            final Map<String, InnerClassPatcher.OuterClassConfiguration> outerConfig) {
+        this.targets = targets;
+        this.innerClasses = new InnerClassPatcher.InnerClassConfiguration[targets.length][];
+        this.outerClasses = new InnerClassPatcher.OuterClassConfiguration[targets.length];
+
+        // Allow 16 bits per target, so a miss is near certain to be caught by the bitmap
+        int bits = 64;
+        while (bits < targets.length * 16) bits <<= 1;
+        this.bitmap = new long[bits >>> 6];
+        this.mask = bits - 1;
+
+        for (int i = 0; i < targets.length; i++) {
+            final String target = targets[i];
+            final int bit = this.bit(target);
+            this.bitmap[bit >>> 6] |= 1L << bit;
+
+            // Copy the attributes, so later changes to the configuration aren't seen
+            final List<InnerClassPatcher.InnerClassConfiguration> inner = innerConfigs.getOrDefault(target, Collections.emptyList());
+            this.innerClasses[i] = inner.isEmpty() ? NO_INNER_CLASSES : inner.stream()
+                    .map(CompiledConfiguration::copy)
+                    .toArray(InnerClassPatcher.InnerClassConfiguration[]::new);
+            final InnerClassPatcher.OuterClassConfiguration outer = outerConfig.get(target);
+            this.outerClasses[i] = outer == null ? null : copy(outer);
+        }
+    }
+
+    /**
+     * Gets the index of the given class, within this configuration.
+     *
+     * @param name The name of the class
+     * @return The index of the class, or {@code -1} should the class not
+     *         be patched
+     */
+    public int indexOf(final String name) {
+        final int bit = this.bit(name);
+        if ((this.bitmap[bit >>> 6] & (1L << bit)) == 0) return -1;
+        final int index = Arrays.binarySearch(this.targets, name);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Establishes whether the given class is modified by this
+     * configuration.
+     *
+     * @param name The name of the class
+     * @return {@code true} should the class be patched
+     */
+    public boolean patches(final String name) {
+        return this.indexOf(name) != -1;
+    }
+
+    /**
+     * Gets the number of classes patched by this configuration.
+     *
+     * @return The number of patched classes
+     */
+    public int getTargetCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Gets the name of the patched class at the given index.
+     *
+     * @param index The index of the class
+     * @return The name of the class
+     */
+    public String getTarget(final int index) {
+        return this.targets[index];
+    }
+
+    /**
+     * Gets the inner class attributes to add to the patched class at the
+     * given index.
+     *
+     * @param index The index of the class
+     * @return The inner class attributes, which must not be modified
+     */
+    public InnerClassPatcher.InnerClassConfiguration[] getInnerClasses(final int index) {
+        return this.innerClasses[index];
+    }
+
+    /**
+     * Gets the outer class attribute to add to the patched class at the
+     * given index.
+     *
+     * @param index The index of the class
+     * @return The outer class attribute, or {@code null} should there be
+     *         none
+     */
+    public InnerClassPatcher.OuterClassConfiguration getOuterClass(final int index) {
+        return this.outerClasses[index];
+    }
+
+    private int bit(final String name) {
+        // Spread the hash, as class names commonly differ only in their last characters
+        final int hash = name.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    private static InnerClassPatcher.InnerClassConfiguration copy(final InnerClassPatcher.InnerClassConfiguration config) {
+        final InnerClassPatcher.InnerClassConfiguration copy = new InnerClassPatcher.InnerClassConfiguration();
+        copy.name = config.name;
+        copy.outerName = config.outerName;
+        copy.innerName = config.innerName;
+        copy.access = config.access;
+        return copy;
+    }
+
+    private static InnerClassPatcher.OuterClassConfiguration copy(final InnerClassPatcher.OuterClassConfiguration config) {
+        final InnerClassPatcher.OuterClassConfiguration copy = new InnerClassPatcher.OuterClassConfiguration();
+        copy.owner = config.owner;
+        copy.name = config.name;
+        copy.desc = config.desc;
+        return copy;
+    }
+
+}
@@ -34,63 +34,205 @@ package me.jamiemansfield.potassium.patcher;
 
 import static org.objectweb.asm.Opcodes.ASM5;
 
-import com.google.common.io.ByteStreams;
+import me.jamiemansfield.potassium.timing.RunReport;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.IoBuffers;
+import me.jamiemansfield.potassium.util.IoExecutors;
+import me.jamiemansfield.potassium.util.ResourceGovernor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
-import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 
 public class InnerClassPatcher extends ClassVisitor {
 
-    public static void patchJar(final Path inputJar, final Path outputJar, final Configuration configuration) {
-        try (final JarFile jarFile = new JarFile(inputJar.toFile())) {
-            try (final JarOutputStream jos = new JarOutputStream(Files.newOutputStream(outputJar))) {
-                for (final JarEntry entry : jarFile.stream().collect(Collectors.toSet())) {
-                    jos.putNextEntry(new JarEntry(entry.getName()));
-
-                    if (entry.getName().endsWith(".class")) {
-                        final ClassReader reader = new ClassReader(ByteStreams.toByteArray(jarFile.getInputStream(entry)));
-                        final ClassNode newNode = new ClassNode();
-                        reader.accept(new InnerClassPatcher(newNode, configuration), 0);
-
-                        final ClassWriter writer = new ClassWriter(0);
-                        newNode.accept(writer);
-
-                        jos.write(writer.toByteArray());
-                    } else {
-                        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        ByteStreams.copy(jarFile.getInputStream(entry), baos);
-                        jos.write(baos.toByteArray());
+    // Enough entries in flight to keep every thread busy, without holding
+    // the whole jar in memory
+    private static final int WINDOW = Runtime.getRuntime().availableProcessors() * 4;
+
+    /**
+     * Patches the given jar, writing the result to the output jar.
+     *
+     * @param inputJar The jar to patch
+     * @param outputJar The location of the patched jar
+     * @param configuration The patcher configuration
+     * @return The names of the classes that were modified
+     * @throws IOException Should the jar fail to be patched, in which
+     *                     case no output jar is left behind
+     */
+    public static Set<String> patchJar(final Path inputJar, final Path outputJar, final Configuration configuration) throws IOException {
+        return patchJar(inputJar, outputJar, configuration.compile());
+    }
+
+    /**
+     * Patches the given jar, writing the result to the output jar.
+     *
+     * @param inputJar The jar to patch
+     * @param outputJar The location of the patched jar
+     * @param configuration The compiled patcher configuration
+     * @return The names of the classes that were modified
+     * @throws IOException Should the jar fail to be patched, in which
+     *                     case no output jar is left behind
+     */
+    public static Set<String> patchJar(final Path inputJar, final Path outputJar, final CompiledConfiguration configuration)
+            throws IOException {
+        return patchJar(inputJar, outputJar, configuration, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Patches the given jar, writing the result to the output jar with
+     * the given compression level.
+     *
+     * <p>Lower levels write the jar faster, at the cost of its size.</p>
+     *
+     * @param inputJar The jar to patch
+     * @param outputJar The location of the patched jar
+     * @param configuration The compiled patcher configuration
+     * @param level The compression level, from 0 to 9, or
+     *              {@link Deflater#DEFAULT_COMPRESSION}
+     * @return The names of the classes that were modified
+     * @throws IOException Should the jar fail to be patched, in which
+     *                     case no output jar is left behind
+     */
+    public static Set<String> patchJar(final Path inputJar, final Path outputJar, final CompiledConfiguration configuration,
+            final int level) throws IOException {
+        final ExecutorService executor = IoExecutors.create("Potassium Patcher");
+        final ResourceGovernor governor = ResourceGovernor.shared();
+        final Set<String> modified = new TreeSet<>();
+        final Deque<PendingEntry> window = new ArrayDeque<>();
+        boolean complete = false;
+
+        try (final Timing timing = Timings.start("patch.jar");
+             final JarFile jarFile = new JarFile(inputJar.toFile());
+             final JarOutputStream jos = new JarOutputStream(Files.newOutputStream(outputJar))) {
+            jos.setLevel(level);
+
+            // Read, and patch, a window of entries alongside each other -
+            // writing them out in order, as the window fills. Each entry
+            // holds a permit until it has been written, so the window also
+            // shrinks should too much be in flight.
+            for (final JarEntry entry : Collections.list(jarFile.entries())) {
+                ResourceGovernor.Permit permit = null;
+                while (permit == null) {
+                    if (window.isEmpty()) {
+                        // Nothing is held here, so wait for the other stages
+                        permit = governor.acquire(entry.getSize());
+                    } else if (window.size() < WINDOW) {
+                        permit = governor.tryAcquire(entry.getSize());
+                    }
+                    if (permit == null) {
+                        writeEntry(jos, window.poll(), configuration, modified, timing);
                     }
                 }
+                window.add(new PendingEntry(entry, permit, executor.submit(() -> readEntry(jarFile, entry, configuration))));
+            }
+            while (!window.isEmpty()) {
+                writeEntry(jos, window.poll(), configuration, modified, timing);
+            }
+            complete = true;
+        } finally {
+            executor.shutdownNow();
+            window.forEach(pending -> pending.permit.close());
+            if (!complete) {
+                // Don't leave a truncated jar, that looks like a success
+                Files.deleteIfExists(outputJar);
+            }
+        }
+        return modified;
+    }
+
+    private static void writeEntry(final JarOutputStream jos, final PendingEntry pending, final CompiledConfiguration configuration,
+            final Set<String> modified, final Timing timing) throws IOException {
+        final byte[] bytes;
+        try (final ResourceGovernor.Permit permit = pending.permit) {
+            try {
+                bytes = pending.bytes.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while patching " + pending.entry.getName());
+            } catch (final ExecutionException ex) {
+                throw new IOException("Failed to patch " + pending.entry.getName(), ex.getCause());
             }
-            catch (IOException e) {
-                e.printStackTrace();
+
+            jos.putNextEntry(new JarEntry(pending.entry.getName()));
+            jos.write(bytes);
+        }
+
+        if (pending.entry.getName().endsWith(".class")) {
+            timing.classes(1).bytes(bytes.length);
+
+            final String className = className(pending.entry);
+            if (configuration.patches(className)) {
+                modified.add(className);
             }
-        } catch (final IOException ex) {
-            System.err.println("Failed to read the jar file!");
-            ex.printStackTrace(System.err);
         }
     }
 
-    private final Configuration configuration;
+    private static byte[] readEntry(final JarFile jarFile, final JarEntry entry, final CompiledConfiguration configuration)
+            throws IOException {
+        // Classes that aren't patched are copied as they are, without being parsed
+        if (entry.getName().endsWith(".class") && configuration.patches(className(entry))) {
+            final long start = System.nanoTime();
+            final ClassNode newNode = new ClassNode();
+            try (final InputStream in = jarFile.getInputStream(entry);
+                 final IoBuffers.Buffer buffer = IoBuffers.read(in, entry.getSize());
+                 final Timing patch = Timings.start("patch.transform")) {
+                // The class is parsed straight out of the pooled buffer
+                new ClassReader(buffer.getBytes(), 0, buffer.getLength()).accept(new InnerClassPatcher(newNode, configuration), 0);
+                patch.classes(1).bytes(buffer.getLength());
+            }
+
+            try (final Timing encode = Timings.start("patch.encode")) {
+                final ClassWriter writer = new ClassWriter(0);
+                newNode.accept(writer);
+                final byte[] bytes = writer.toByteArray();
+                encode.classes(1).bytes(bytes.length);
+                RunReport.recordPatch(className(entry), System.nanoTime() - start, bytes.length);
+                return bytes;
+            }
+        } else {
+            try (final InputStream in = jarFile.getInputStream(entry)) {
+                return IoBuffers.toByteArray(in, entry.getSize());
+            }
+        }
+    }
+
+    private static String className(final JarEntry entry) {
+        return entry.getName().substring(0, entry.getName().length() - ".class".length());
+    }
+
+    private final CompiledConfiguration configuration;
 
     private String name = "";
 
     public InnerClassPatcher(final ClassVisitor cv, final Configuration configuration) {
+        this(cv, configuration.compile());
+    }
+
+    public InnerClassPatcher(final ClassVisitor cv, final CompiledConfiguration configuration) {
         super(ASM5, cv);
         this.configuration = configuration;
     }
@@ -105,35 +247,66 @@ public class InnerClassPatcher extends ClassVisitor {
 
     @Override
     public void visitEnd() {
-        // Add inner class references
-        if (this.configuration.innerConfigs.containsKey(this.name)) {
-            final List<InnerClassConfiguration> configs = this.configuration.innerConfigs.get(this.name);
-
-            for (final InnerClassConfiguration config : configs) {
+        final int index = this.configuration.indexOf(this.name);
+        if (index != -1) {
+            // Add inner class references
+            for (final InnerClassConfiguration config : this.configuration.getInnerClasses(index)) {
                 this.visitInnerClass(config.name, config.outerName, config.innerName, config.access);
             }
-        }
 
-        // Add outer class references
-        if (this.configuration.outerConfig.containsKey(this.name)) {
-            final OuterClassConfiguration config = this.configuration.outerConfig.get(this.name);
-            this.visitOuterClass(config.owner, config.name, config.desc);
+            // Add outer class references
+            final OuterClassConfiguration config = this.configuration.getOuterClass(index);
+            if (config != null) {
+                this.visitOuterClass(config.owner, config.name, config.desc);
+            }
         }
 
         // Call super
         super.visitEnd();
     }
 
+    private static final class PendingEntry {
+
+        private final JarEntry entry;
+        private final ResourceGovernor.Permit permit;
+        private final Future<byte[]> bytes;
+
+        private PendingEntry(final JarEntry entry, final ResourceGovernor.Permit permit, final Future<byte[]> bytes) {
+            this.entry = entry;
+            this.permit = permit;
+            this.bytes = bytes;
+        }
+
+    }
+
     public static class Configuration {
 
         public Map<String, List<InnerClassConfiguration>> innerConfigs = new HashMap<>();
         public Map<String, OuterClassConfiguration> outerConfig = new HashMap<>();
 
         public List<InnerClassConfiguration> inner(final String name) {
-            if (!this.innerConfigs.containsKey(name)) {
-                this.innerConfigs.put(name, new ArrayList<>());
-            }
-            return this.innerConfigs.get(name);
+            return this.innerConfigs.computeIfAbsent(name, key -> new ArrayList<>());
+        }
+
+        /**
+         * Establishes whether the given class is modified by this
+         * configuration.
+         *
+         * @param name The name of the class
+         * @return {@code true} should the class be patched
+         */
+        public boolean patches(final String name) {
+            return this.innerConfigs.containsKey(name) || this.outerConfig.containsKey(name);
+        }
+
+        /**
+         * Compiles this configuration, into an immutable form that is
+         * cheaper to patch with.
+         *
+         * @return The compiled configuration
+         */
+        public CompiledConfiguration compile() {
+            return CompiledConfiguration.of(this);
         }
 
     }
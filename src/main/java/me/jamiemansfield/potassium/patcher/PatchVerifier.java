@@ -0,0 +1,291 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.patcher;
+
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.IoBuffers;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.BasicVerifier;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+import org.objectweb.asm.util.CheckClassAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies the classes of a patched jar, using ASM's
+ * {@link CheckClassAdapter} and {@link Analyzer}, so that a broken patch
+ * is found without launching the game.
+ *
+ * <p>The modified classes are always checked, and the rest of the jar
+ * may be sampled. Given a classpath, the class hierarchy is resolved and
+ * the methods are checked with a {@link SimpleVerifier}; otherwise the
+ * {@link BasicVerifier} is used, as the game's libraries aren't to
+ * hand.</p>
+ */
+public class PatchVerifier {
+
+    private final Path jar;
+    private final List<Path> classpath = new ArrayList<>();
+    private double sampleRate = 0;
+
+    /**
+     * Creates a new patch verifier, for the given jar.
+     *
+     * @param jar The patched jar
+     */
+    public PatchVerifier(final Path jar) {
+        this.jar = jar;
+    }
+
+    /**
+     * Sets the proportion, between {@code 0} and {@code 1}, of the
+     * unmodified classes that are verified too. The sample is picked by
+     * the class names, so is the same from run to run.
+     *
+     * @param sampleRate The sample rate
+     * @return {@code this}, for chaining
+     */
+    public PatchVerifier sample(final double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("The sample rate must be between 0 and 1!");
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * Adds the given jar, or directory, to the classpath used to resolve
+     * the class hierarchy.
+     *
+     * @param path The classpath entry
+     * @return {@code this}, for chaining
+     */
+    public PatchVerifier classpath(final Path path) {
+        this.classpath.add(path);
+        return this;
+    }
+
+    /**
+     * Verifies the modified classes, and a sample of the rest, in
+     * parallel.
+     *
+     * @param modified The names of the modified classes
+     * @return The verification report
+     */
+    public Report verify(final Set<String> modified) {
+        final Map<String, byte[]> classes = new HashMap<>();
+        try (final JarFile jarFile = new JarFile(this.jar.toFile())) {
+            for (final JarEntry entry : Collections.list(jarFile.entries())) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) continue;
+
+                final String name = entry.getName().substring(0, entry.getName().length() - ".class".length());
+                if (!modified.contains(name) && !this.isSampled(name)) continue;
+
+                try (final InputStream in = jarFile.getInputStream(entry)) {
+                    classes.put(name, IoBuffers.toByteArray(in, entry.getSize()));
+                }
+            }
+        } catch (final IOException ex) {
+            System.err.println("Failed to read the jar file!");
+            ex.printStackTrace(System.err);
+            return new Report(0, Collections.singletonMap(this.jar.toString(), ex.toString()));
+        }
+
+        final URLClassLoader loader;
+        try {
+            loader = this.createClassLoader();
+        } catch (final MalformedURLException ex) {
+            System.err.println("Failed to create the verifier's class loader!");
+            ex.printStackTrace(System.err);
+            return new Report(0, Collections.singletonMap(this.jar.toString(), ex.toString()));
+        }
+
+        final Map<String, String> failures = new ConcurrentHashMap<>();
+        try (final Timing timing = Timings.start("patch.verify")) {
+            classes.entrySet().parallelStream().forEach(entry -> {
+                final String failure = verify(entry.getValue(), loader);
+                if (failure != null) {
+                    failures.put(entry.getKey(), failure);
+                }
+            });
+            timing.classes(classes.size()).bytes(classes.values().stream().mapToLong(bytes -> bytes.length).sum());
+        } finally {
+            if (loader != null) {
+                try {
+                    loader.close();
+                } catch (final IOException ex) {
+                    // The classes have still been verified
+                    System.err.println("Failed to close the verifier's class loader!");
+                    ex.printStackTrace(System.err);
+                }
+            }
+        }
+        return new Report(classes.size(), failures);
+    }
+
+    private boolean isSampled(final String name) {
+        return (name.hashCode() & Integer.MAX_VALUE) % 10000 < this.sampleRate * 10000;
+    }
+
+    private URLClassLoader createClassLoader() throws MalformedURLException {
+        if (this.classpath.isEmpty()) return null;
+
+        final List<URL> urls = new ArrayList<>();
+        urls.add(this.jar.toUri().toURL());
+        for (final Path path : this.classpath) {
+            urls.add(path.toUri().toURL());
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), PatchVerifier.class.getClassLoader());
+    }
+
+    private static String verify(final byte[] bytes, final ClassLoader loader) {
+        final ClassNode node = new ClassNode();
+        try {
+            // Checks the structure of the class, including its inner
+            // class attributes
+            new ClassReader(bytes).accept(new CheckClassAdapter(node, false), 0);
+        } catch (final RuntimeException ex) {
+            return ex.toString();
+        }
+
+        final Interpreter<BasicValue> interpreter;
+        if (loader != null) {
+            final SimpleVerifier verifier = new SimpleVerifier(
+                    Type.getObjectType(node.name),
+                    node.superName == null ? null : Type.getObjectType(node.superName),
+                    node.interfaces.stream().map(Type::getObjectType).collect(Collectors.toList()),
+                    (node.access & ACC_INTERFACE) != 0
+            );
+            verifier.setClassLoader(loader);
+            interpreter = verifier;
+        } else {
+            interpreter = new BasicVerifier();
+        }
+
+        for (final MethodNode method : node.methods) {
+            try {
+                new Analyzer<>(interpreter).analyze(node.name, method);
+            } catch (final AnalyzerException ex) {
+                return method.name + method.desc + ": " + ex.getMessage();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The result of verifying a patched jar.
+     */
+    public static class Report {
+
+        private final int checked;
+        private final SortedMap<String, String> failures;
+
+        /**
+         * Creates a new report.
+         *
+         * @param checked The number of classes checked
+         * @param failures The failures, by class name
+         */
+        public Report(final int checked, final Map<String, String> failures) {
+            this.checked = checked;
+            this.failures = Collections.unmodifiableSortedMap(new TreeMap<>(failures));
+        }
+
+        /**
+         * Gets the number of classes that were checked.
+         *
+         * @return The number of classes checked
+         */
+        public int getChecked() {
+            return this.checked;
+        }
+
+        /**
+         * Gets the failures, by class name, in name order.
+         *
+         * @return The failures
+         */
+        public SortedMap<String, String> getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Establishes whether every checked class passed.
+         *
+         * @return {@code true} should there be no failures
+         */
+        public boolean isSuccessful() {
+            return this.failures.isEmpty();
+        }
+
+        /**
+         * Prints the report to the given stream.
+         *
+         * @param out The stream to print to
+         */
+        public void print(final PrintStream out) {
+            out.println("Verified " + this.checked + " classes, " + this.failures.size() + " failed");
+            this.failures.forEach((name, failure) -> out.println("  " + name + ": " + failure));
+        }
+
+    }
+
+}
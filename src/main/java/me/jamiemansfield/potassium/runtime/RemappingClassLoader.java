@@ -0,0 +1,256 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.runtime;
+
+import me.jamiemansfield.potassium.mapper.MappingTable;
+import me.jamiemansfield.potassium.patcher.CompiledConfiguration;
+import me.jamiemansfield.potassium.patcher.InnerClassPatcher;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.IoBuffers;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.commons.RemappingClassAdapter;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A {@link ClassLoader} that loads the classes of an obfuscated jar by
+ * their de-obfuscated names, patching and remapping each class as it is
+ * loaded - so the game can be launched without writing any jars.
+ *
+ * <p>Only the classes that are actually loaded are transformed, and the
+ * transformed classes are cached. Members referenced through a subtype
+ * of their owner are resolved through the supertypes in the jar.</p>
+ */
+public class RemappingClassLoader extends ClassLoader implements Closeable {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final JarFile jar;
+    private final URL jarUrl;
+    private final CompiledConfiguration patches;
+    private final Remapper remapper;
+    // De-obfuscated class name -> obfuscated class name
+    private final Map<String, String> obfuscatedNames = new HashMap<>();
+    private final ConcurrentMap<String, byte[]> transformed = new ConcurrentHashMap<>();
+    // Obfuscated class name -> obfuscated names of its direct supertypes
+    private final ConcurrentMap<String, List<String>> supertypes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new remapping class loader.
+     *
+     * @param jar The obfuscated jar
+     * @param mappings The mappings to apply
+     * @param patches The patches to apply, before remapping
+     * @param parent The parent class loader
+     * @throws IOException Should the jar not be readable
+     */
+    public RemappingClassLoader(final Path jar, final MappingTable mappings, final InnerClassPatcher.Configuration patches,
+            final ClassLoader parent) throws IOException {
+        super(parent);
+        this.jar = new JarFile(jar.toFile());
+        this.jarUrl = jar.toUri().toURL();
+        this.patches = patches.compile();
+        this.remapper = new InheritanceRemapper(flatten(mappings));
+
+        for (int i = 0; i < mappings.getClassCount(); i++) {
+            this.obfuscatedNames.put(mappings.getClassDeobfuscatedName(i), mappings.getClassObfuscatedName(i));
+        }
+    }
+
+    /**
+     * Gets the patched, and remapped, bytes of the given class.
+     *
+     * @param name The de-obfuscated internal name of the class
+     * @return The bytes of the class, or {@code null} should the jar not
+     *         contain the class
+     */
+    public byte[] getTransformedBytes(final String name) {
+        return this.transformed.computeIfAbsent(name, this::transform);
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        final byte[] bytes = this.getTransformedBytes(name.replace('.', '/'));
+        if (bytes == null) throw new ClassNotFoundException(name);
+        return this.defineClass(name, bytes, 0, bytes.length);
+    }
+
+    @Override
+    protected URL findResource(final String name) {
+        if (name.endsWith(".class") || this.jar.getJarEntry(name) == null) return null;
+        try {
+            return new URL("jar:" + this.jarUrl + "!/" + name);
+        } catch (final MalformedURLException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.jar.close();
+    }
+
+    private byte[] transform(final String name) {
+        final String obfuscatedName = this.obfuscatedNames.getOrDefault(name, name);
+
+        // An obfuscated name that has been mapped is no longer a class
+        if (!this.remapper.mapType(obfuscatedName).equals(name)) return null;
+
+        final JarEntry entry = this.jar.getJarEntry(obfuscatedName + ".class");
+        if (entry == null) return null;
+
+        try (final Timing timing = Timings.start("runtime.transform");
+             final InputStream in = this.jar.getInputStream(entry);
+             final IoBuffers.Buffer buffer = IoBuffers.read(in, entry.getSize())) {
+            final ClassReader reader = new ClassReader(buffer.getBytes(), 0, buffer.getLength());
+            final ClassWriter writer = new ClassWriter(0);
+
+            // The patches are keyed by obfuscated names, so are applied first
+            reader.accept(new InnerClassPatcher(new RemappingClassAdapter(writer, this.remapper), this.patches), 0);
+
+            final byte[] bytes = writer.toByteArray();
+            timing.classes(1).bytes(bytes.length);
+            return bytes;
+        } catch (final IOException ex) {
+            System.err.println("Failed to read " + obfuscatedName + "!");
+            ex.printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    private List<String> getSupertypes(final String obfuscatedName) {
+        return this.supertypes.computeIfAbsent(obfuscatedName, this::readSupertypes);
+    }
+
+    private List<String> readSupertypes(final String obfuscatedName) {
+        // Classes outside of the jar have no mapped members
+        final JarEntry entry = this.jar.getJarEntry(obfuscatedName + ".class");
+        if (entry == null) return Collections.emptyList();
+
+        try (final InputStream in = this.jar.getInputStream(entry);
+             final IoBuffers.Buffer buffer = IoBuffers.read(in, entry.getSize())) {
+            final ClassReader reader = new ClassReader(buffer.getBytes(), 0, buffer.getLength());
+            final List<String> supertypes = new ArrayList<>();
+            if (reader.getSuperName() != null) {
+                supertypes.add(reader.getSuperName());
+            }
+            supertypes.addAll(Arrays.asList(reader.getInterfaces()));
+            return supertypes;
+        } catch (final IOException ex) {
+            System.err.println("Failed to read " + obfuscatedName + "!");
+            ex.printStackTrace(System.err);
+            return Collections.emptyList();
+        }
+    }
+
+    private static Map<String, String> flatten(final MappingTable mappings) {
+        // See SimpleRemapper for the format of the keys
+        final Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < mappings.getClassCount(); i++) {
+            names.put(mappings.getClassObfuscatedName(i), mappings.getClassDeobfuscatedName(i));
+        }
+        for (int i = 0; i < mappings.getFieldCount(); i++) {
+            names.put(mappings.getFieldOwner(i) + '.' + mappings.getFieldObfuscatedName(i), mappings.getFieldDeobfuscatedName(i));
+        }
+        for (int i = 0; i < mappings.getMethodCount(); i++) {
+            names.put(mappings.getMethodOwner(i) + '.' + mappings.getMethodObfuscatedName(i) + mappings.getMethodDescriptor(i),
+                    mappings.getMethodDeobfuscatedName(i));
+        }
+        return names;
+    }
+
+    /**
+     * A {@link SimpleRemapper} that looks up members not mapped against
+     * the referenced owner, against the owner's supertypes.
+     */
+    private final class InheritanceRemapper extends SimpleRemapper {
+
+        private InheritanceRemapper(final Map<String, String> mapping) {
+            super(mapping);
+        }
+
+        @Override
+        public String mapMethodName(final String owner, final String name, final String desc) {
+            final String mapped = this.resolve(owner, '.' + name + desc);
+            return mapped == null ? name : mapped;
+        }
+
+        @Override
+        public String mapFieldName(final String owner, final String name, final String desc) {
+            final String mapped = this.resolve(owner, '.' + name);
+            return mapped == null ? name : mapped;
+        }
+
+        private String resolve(final String owner, final String member) {
+            final Deque<String> queue = new ArrayDeque<>();
+            final Set<String> visited = new HashSet<>();
+            queue.add(owner);
+            while (!queue.isEmpty()) {
+                final String type = queue.poll();
+                if (!visited.add(type)) continue;
+
+                final String mapped = this.map(type + member);
+                if (mapped != null) return mapped;
+                queue.addAll(RemappingClassLoader.this.getSupertypes(type));
+            }
+            return null;
+        }
+
+    }
+
+}
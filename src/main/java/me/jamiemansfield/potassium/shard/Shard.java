@@ -0,0 +1,144 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.shard;
+
+/**
+ * A portion of the classes of a jar, mapped by one worker of a sharded
+ * run - see {@link ShardCoordinator}.
+ *
+ * <p>Classes are assigned to shards by their names alone, so every
+ * worker agrees on the shard of every class without coordinating.</p>
+ */
+public final class Shard {
+
+    /**
+     * The shard containing every class.
+     */
+    public static final Shard ALL = new Shard(0, 1, Strategy.HASH);
+
+    private final int index;
+    private final int count;
+    private final Strategy strategy;
+
+    /**
+     * Creates a new shard.
+     *
+     * @param index The index of the shard, from {@code 0}
+     * @param count The number of shards
+     * @param strategy How classes are assigned to shards
+     */
+    public Shard(final int index, final int count, final Strategy strategy) {
+        if (count < 1) throw new IllegalArgumentException("count must be at least 1");
+        if (index < 0 || index >= count) throw new IllegalArgumentException("index must be between 0 and " + (count - 1));
+        this.index = index;
+        this.count = count;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Gets the index of the shard.
+     *
+     * @return The index
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return The number of shards
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets how classes are assigned to shards.
+     *
+     * @return The strategy
+     */
+    public Strategy getStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Establishes whether the class of the given name belongs to this
+     * shard.
+     *
+     * @param className The class name
+     * @return {@code true} should the class belong to the shard
+     */
+    public boolean contains(final String className) {
+        if (this.count == 1) return true;
+        return (this.strategy.key(className).hashCode() & Integer.MAX_VALUE) % this.count == this.index;
+    }
+
+    @Override
+    public String toString() {
+        return (this.index + 1) + "/" + this.count + " by " + this.strategy;
+    }
+
+    /**
+     * How classes are assigned to shards.
+     */
+    public enum Strategy {
+
+        /**
+         * By the hash of the class name, spreading classes evenly.
+         */
+        HASH {
+            @Override
+            String key(final String className) {
+                return className;
+            }
+        },
+
+        /**
+         * By the hash of the package name, keeping each package in one
+         * shard.
+         */
+        PACKAGE {
+            @Override
+            String key(final String className) {
+                final int index = className.lastIndexOf('/');
+                return index < 0 ? "" : className.substring(0, index);
+            }
+        },
+        ;
+
+        abstract String key(final String className);
+
+    }
+
+}
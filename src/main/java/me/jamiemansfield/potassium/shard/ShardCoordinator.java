@@ -0,0 +1,217 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.shard;
+
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+import me.jamiemansfield.potassium.mapper.MappingTables;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps a jar across several worker JVMs on the same machine, each
+ * mapping one {@link Shard} of its classes, so that no single heap needs
+ * to hold every parsed class.
+ *
+ * <p>Every worker loads the whole jar, so tasks that depend on the class
+ * hierarchy, or on other classes, are correct in every shard. The
+ * partial mappings are merged in shard order, so the result is the same
+ * regardless of which worker finishes first.</p>
+ */
+public class ShardCoordinator {
+
+    private final Path jar;
+    private final Environment.Side side;
+    private final int shards;
+    private Shard.Strategy strategy = Shard.Strategy.HASH;
+    private int threads = 1;
+    private String workerHeap;
+    private Integer maxParsedClasses;
+
+    /**
+     * Creates a new shard coordinator.
+     *
+     * @param jar The jar to map
+     * @param side The side of the jar
+     * @param shards The number of shards, and so workers
+     */
+    public ShardCoordinator(final Path jar, final Environment.Side side, final int shards) {
+        if (shards < 1) throw new IllegalArgumentException("shards must be at least 1");
+        this.jar = jar;
+        this.side = side;
+        this.shards = shards;
+    }
+
+    /**
+     * Sets how classes are assigned to shards.
+     *
+     * @param strategy The strategy
+     * @return {@code this}, for chaining
+     */
+    public ShardCoordinator setStrategy(final Shard.Strategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads each worker maps with.
+     *
+     * @param threads The number of threads
+     * @return {@code this}, for chaining
+     */
+    public ShardCoordinator setThreads(final int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the maximum heap of each worker, in the form of {@code -Xmx}.
+     *
+     * @param workerHeap The maximum heap, for example {@code 512m}
+     * @return {@code this}, for chaining
+     */
+    public ShardCoordinator setWorkerHeap(final String workerHeap) {
+        this.workerHeap = workerHeap;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of parsed classes each worker holds at
+     * once.
+     *
+     * @param maxParsedClasses The maximum number of parsed classes
+     * @return {@code this}, for chaining
+     */
+    public ShardCoordinator setMaxParsedClasses(final int maxParsedClasses) {
+        this.maxParsedClasses = maxParsedClasses;
+        return this;
+    }
+
+    /**
+     * Maps the jar, across the workers.
+     *
+     * @return The merged mappings, and any conflicts between shards
+     * @throws IOException Should a worker fail, or its mappings fail to
+     *                     be read
+     */
+    public MappingTables.MergeResult map() throws IOException {
+        final Path workDir = Files.createTempDirectory("potassium-shards");
+        try {
+            final List<Process> workers = new ArrayList<>();
+            final List<Path> outputs = new ArrayList<>();
+
+            try (final Timing timing = Timings.start("shard.workers")) {
+                for (int i = 0; i < this.shards; i++) {
+                    final Path output = workDir.resolve("shard-" + i + ".srg");
+                    outputs.add(output);
+                    workers.add(new ProcessBuilder(this.command(i, output))
+                            .inheritIO()
+                            .start());
+                }
+
+                for (int i = 0; i < workers.size(); i++) {
+                    final int status = workers.get(i).waitFor();
+                    if (status != 0) {
+                        throw new IOException("Worker for shard " + (i + 1) + "/" + this.shards + " failed, with status " + status);
+                    }
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the workers!", ex);
+            } finally {
+                // Don't leave workers running, should one fail to start, or
+                // another fail, or the wait be interrupted
+                workers.forEach(Process::destroy);
+            }
+
+            // Merge in shard order, so the result is deterministic
+            try (final Timing timing = Timings.start("shard.merge")) {
+                MappingTables.MergeResult result = null;
+                for (final Path output : outputs) {
+                    final MappingTable table;
+                    try (final BufferedReader reader = Files.newBufferedReader(output)) {
+                        table = MappingTables.readSrg(reader);
+                    }
+
+                    if (result == null) {
+                        result = MappingTables.merge(table, MappingTable.EMPTY);
+                    } else {
+                        final MappingTables.MergeResult merged = MappingTables.merge(result.getTable(), table);
+                        final List<MappingTables.Conflict> conflicts = new ArrayList<>(result.getConflicts());
+                        conflicts.addAll(merged.getConflicts());
+                        result = new MappingTables.MergeResult(merged.getTable(), conflicts);
+                    }
+                }
+                timing.classes(this.shards);
+                return result;
+            }
+        } finally {
+            for (int i = 0; i < this.shards; i++) {
+                Files.deleteIfExists(workDir.resolve("shard-" + i + ".srg"));
+            }
+            Files.deleteIfExists(workDir);
+        }
+    }
+
+    private List<String> command(final int index, final Path output) {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (this.workerHeap != null) {
+            command.add("-Xmx" + this.workerHeap);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+
+        command.add(this.jar.toAbsolutePath().toString());
+        command.add(this.side.name());
+        command.add(String.valueOf(index));
+        command.add(String.valueOf(this.shards));
+        command.add(this.strategy.name());
+        command.add(output.toString());
+        command.add(String.valueOf(this.threads));
+        if (this.maxParsedClasses != null) {
+            command.add(String.valueOf(this.maxParsedClasses));
+        }
+        return command;
+    }
+
+}
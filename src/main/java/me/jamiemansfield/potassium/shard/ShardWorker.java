@@ -0,0 +1,94 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.shard;
+
+import me.jamiemansfield.lorenz.io.writer.SrgWriter;
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.env.MinecraftClassicEnvironment;
+import me.jamiemansfield.potassium.jar.JarWalker;
+import me.jamiemansfield.potassium.jar.SourceSet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The entry point of a worker JVM, launched by a {@link ShardCoordinator}
+ * to map a single shard of a jar.
+ *
+ * <p>Arguments: {@code <jar> <side> <index> <count> <strategy> <srg>
+ * <threads> [maxParsedClasses]}. The worker exits with a non-zero
+ * status should it fail.</p>
+ */
+public final class ShardWorker {
+
+    public static void main(final String[] args) {
+        if (args.length < 7) {
+            System.err.println("Usage: ShardWorker <jar> <side> <index> <count> <strategy> <srg> <threads> [maxParsedClasses]");
+            System.exit(-1);
+            return;
+        }
+
+        final Path jar = Paths.get(args[0]);
+        final Environment.Side side = Environment.Side.valueOf(args[1]);
+        final Shard shard = new Shard(Integer.parseInt(args[2]), Integer.parseInt(args[3]), Shard.Strategy.valueOf(args[4]));
+        final Path srg = Paths.get(args[5]);
+        final int threads = Integer.parseInt(args[6]);
+
+        // Every class is loaded, so the hierarchy is complete, but only
+        // the shard's classes are mapped
+        final SourceSet sources = args.length > 7 ?
+                new SourceSet(Integer.parseInt(args[7]), false) :
+                new SourceSet();
+        new JarWalker(jar).walk(sources);
+
+        final MinecraftClassicEnvironment env = new MinecraftClassicEnvironment(sources, side);
+        env.setParallelism(threads);
+        env.setShard(shard);
+        env.map();
+
+        try (final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(srg)))) {
+            writer.write(env.getMappings());
+        } catch (final IOException ex) {
+            System.err.println("Failed to write the mappings of shard " + shard + "!");
+            ex.printStackTrace(System.err);
+            System.exit(-1);
+        }
+    }
+
+    private ShardWorker() {
+    }
+
+}
@@ -0,0 +1,369 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.timing;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * A report of a run, recording what each class cost - its size, the time
+ * spent parsing and patching it, and the number of mappings each mapper
+ * produced for it - to find the classes that make a run slow.
+ *
+ * <p>Reports are disabled by default, in which case nothing is recorded.
+ * Classes are recorded by name, so classes of the same name, such as
+ * those of a client and server mapped in the same run, are reported
+ * together.</p>
+ */
+public final class RunReport {
+
+    private static final Map<String, ClassStatistics> CLASSES = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> MAPPERS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = false;
+
+    /**
+     * Enables, or disables, the recording of the report.
+     *
+     * @param enabled Whether the report should be recorded
+     */
+    public static void setEnabled(final boolean enabled) {
+        RunReport.enabled = enabled;
+    }
+
+    /**
+     * Establishes whether the report is being recorded.
+     *
+     * @return {@code true} should the report be recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Discards all of the recorded statistics.
+     */
+    public static void reset() {
+        CLASSES.clear();
+        MAPPERS.clear();
+    }
+
+    /**
+     * Records a parse of the given class.
+     *
+     * @param className The class name
+     * @param nanos The time spent parsing the class
+     * @param bytes The size of the class
+     */
+    public static void recordParse(final String className, final long nanos, final long bytes) {
+        if (!enabled) return;
+        final ClassStatistics statistics = get(className);
+        statistics.parses.increment();
+        statistics.parseNanos.add(nanos);
+        statistics.bytes.accumulate(bytes);
+    }
+
+    /**
+     * Records a patch of the given class.
+     *
+     * @param className The class name
+     * @param nanos The time spent patching the class
+     * @param bytes The size of the class
+     */
+    public static void recordPatch(final String className, final long nanos, final long bytes) {
+        if (!enabled) return;
+        final ClassStatistics statistics = get(className);
+        statistics.patchNanos.add(nanos);
+        statistics.bytes.accumulate(bytes);
+    }
+
+    /**
+     * Records the number of mappings the given mapper produced for the
+     * given class.
+     *
+     * @param className The class name
+     * @param mapper The name of the mapper
+     * @param entries The number of mappings
+     */
+    public static void recordMappings(final String className, final String mapper, final long entries) {
+        if (!enabled || entries == 0) return;
+        get(className).mappings.computeIfAbsent(mapper, key -> new LongAdder()).add(entries);
+    }
+
+    /**
+     * Records the number of mappings the given mapper produced, across
+     * every class.
+     *
+     * @param mapper The name of the mapper
+     * @param entries The number of mappings
+     */
+    public static void recordMapper(final String mapper, final long entries) {
+        if (!enabled) return;
+        MAPPERS.computeIfAbsent(mapper, key -> new LongAdder()).add(entries);
+    }
+
+    /**
+     * Writes the report to the given file, as CSV should its name end
+     * with {@code .csv}, otherwise as JSON.
+     *
+     * @param path The file to write to
+     * @param top The number of classes to include in each summary, of
+     *            the JSON report
+     * @throws IOException Should the file not be writable
+     */
+    public static void write(final Path path, final int top) throws IOException {
+        try (final Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            if (path.getFileName().toString().toLowerCase().endsWith(".csv")) {
+                writeCsv(writer);
+            } else {
+                writeJson(writer, top);
+            }
+        }
+    }
+
+    /**
+     * Writes the report as JSON, with the statistics of every class,
+     * the total mappings of each mapper, and the names of the most
+     * expensive classes by each measure.
+     *
+     * @param writer The writer to write to
+     * @param top The number of classes to include in each summary
+     * @throws IOException Should the writer fail
+     */
+    public static void writeJson(final Writer writer, final int top) throws IOException {
+        final List<ClassStatistics> classes = sorted();
+
+        writer.write("{\n  \"classes\": [");
+        for (int i = 0; i < classes.size(); i++) {
+            final ClassStatistics statistics = classes.get(i);
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write("    {\"name\": " + quote(statistics.name)
+                    + ", \"bytes\": " + statistics.bytes.get()
+                    + ", \"parses\": " + statistics.parses.sum()
+                    + ", \"parseMillis\": " + millis(statistics.parseNanos.sum())
+                    + ", \"patchMillis\": " + millis(statistics.patchNanos.sum())
+                    + ", \"mappings\": {");
+            boolean first = true;
+            for (final Map.Entry<String, Long> mapper : statistics.getMappings().entrySet()) {
+                writer.write((first ? "" : ", ") + quote(mapper.getKey()) + ": " + mapper.getValue());
+                first = false;
+            }
+            writer.write("}}");
+        }
+        writer.write("\n  ],\n  \"mappers\": {");
+        boolean first = true;
+        for (final Map.Entry<String, Long> mapper : getMappers().entrySet()) {
+            writer.write((first ? "\n" : ",\n") + "    " + quote(mapper.getKey()) + ": " + mapper.getValue());
+            first = false;
+        }
+        writer.write("\n  },\n  \"top\": {");
+        first = true;
+        for (final Measure measure : Measure.values()) {
+            writer.write((first ? "\n" : ",\n") + "    " + quote(measure.name) + ": [");
+            final List<ClassStatistics> worst = top(classes, measure, top);
+            for (int i = 0; i < worst.size(); i++) {
+                writer.write((i == 0 ? "" : ", ") + quote(worst.get(i).name));
+            }
+            writer.write("]");
+            first = false;
+        }
+        writer.write("\n  }\n}\n");
+    }
+
+    /**
+     * Writes the report as CSV, with a row for every class and a column
+     * for the mappings of each mapper.
+     *
+     * @param writer The writer to write to
+     * @throws IOException Should the writer fail
+     */
+    public static void writeCsv(final Writer writer) throws IOException {
+        final List<ClassStatistics> classes = sorted();
+        final TreeSet<String> mappers = new TreeSet<>();
+        classes.forEach(statistics -> mappers.addAll(statistics.mappings.keySet()));
+
+        writer.write("class,bytes,parses,parse_ms,patch_ms");
+        for (final String mapper : mappers) {
+            writer.write("," + csv(mapper));
+        }
+        writer.write("\n");
+
+        for (final ClassStatistics statistics : classes) {
+            writer.write(csv(statistics.name)
+                    + "," + statistics.bytes.get()
+                    + "," + statistics.parses.sum()
+                    + "," + millis(statistics.parseNanos.sum())
+                    + "," + millis(statistics.patchNanos.sum()));
+            for (final String mapper : mappers) {
+                final LongAdder entries = statistics.mappings.get(mapper);
+                writer.write("," + (entries == null ? 0 : entries.sum()));
+            }
+            writer.write("\n");
+        }
+    }
+
+    /**
+     * Prints the most expensive classes by each measure, and the total
+     * mappings of each mapper.
+     *
+     * @param out The stream to print to
+     * @param top The number of classes to print for each measure
+     */
+    public static void printSummary(final PrintStream out, final int top) {
+        final List<ClassStatistics> classes = sorted();
+        for (final Measure measure : Measure.values()) {
+            out.println("Top classes by " + measure.name + ":");
+            for (final ClassStatistics statistics : top(classes, measure, top)) {
+                out.println(String.format("  %-50s %14s", statistics.name, measure.format(statistics)));
+            }
+        }
+        out.println("Mappings by mapper:");
+        getMappers().forEach((mapper, entries) -> out.println(String.format("  %-50s %14d", mapper, entries)));
+    }
+
+    private static ClassStatistics get(final String className) {
+        return CLASSES.computeIfAbsent(className, ClassStatistics::new);
+    }
+
+    private static List<ClassStatistics> sorted() {
+        final List<ClassStatistics> classes = new ArrayList<>(CLASSES.values());
+        classes.sort(Comparator.comparing(statistics -> statistics.name));
+        return classes;
+    }
+
+    private static Map<String, Long> getMappers() {
+        final Map<String, Long> mappers = new TreeMap<>();
+        MAPPERS.forEach((mapper, entries) -> mappers.put(mapper, entries.sum()));
+        return mappers;
+    }
+
+    private static List<ClassStatistics> top(final List<ClassStatistics> classes, final Measure measure, final int top) {
+        final List<ClassStatistics> worst = new ArrayList<>(classes);
+        // Stable, so ties are left in name order
+        worst.sort(Comparator.comparingLong(measure.value).reversed());
+        worst.removeIf(statistics -> measure.value.applyAsLong(statistics) == 0);
+        return worst.subList(0, Math.min(top, worst.size()));
+    }
+
+    private static String millis(final long nanos) {
+        // Always with a decimal point, as the report is read by machines
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String quote(final String value) {
+        final StringBuilder builder = new StringBuilder("\"");
+        for (final char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String csv(final String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * The measures classes are ranked by, in the summaries.
+     */
+    private enum Measure {
+
+        PARSE_TIME("parseTime", statistics -> statistics.parseNanos.sum()),
+        PATCH_TIME("patchTime", statistics -> statistics.patchNanos.sum()),
+        SIZE("size", statistics -> statistics.bytes.get()),
+        MAPPINGS("mappings", statistics -> statistics.getMappings().values().stream().mapToLong(Long::longValue).sum()),
+        ;
+
+        private final String name;
+        private final ToLongFunction<ClassStatistics> value;
+
+        Measure(final String name, final ToLongFunction<ClassStatistics> value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        private String format(final ClassStatistics statistics) {
+            final long value = this.value.applyAsLong(statistics);
+            return this == PARSE_TIME || this == PATCH_TIME ? millis(value) + " ms" : Long.toString(value);
+        }
+
+    }
+
+    /**
+     * The recorded statistics of a single class.
+     */
+    private static final class ClassStatistics {
+
+        private final String name;
+        private final LongAccumulator bytes = new LongAccumulator(Math::max, 0);
+        private final LongAdder parses = new LongAdder();
+        private final LongAdder parseNanos = new LongAdder();
+        private final LongAdder patchNanos = new LongAdder();
+        private final Map<String, LongAdder> mappings = new ConcurrentHashMap<>();
+
+        private ClassStatistics(final String name) {
+            this.name = name;
+        }
+
+        private Map<String, Long> getMappings() {
+            final Map<String, Long> mappings = new TreeMap<>();
+            this.mappings.forEach((mapper, entries) -> mappings.put(mapper, entries.sum()));
+            return mappings;
+        }
+
+    }
+
+    private RunReport() {
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.timing;
+
+/**
+ * A single, in-progress, timing of a phase.
+ *
+ * @see Timings#start(String)
+ */
+public class Timing implements AutoCloseable {
+
+    /**
+     * The timing used when timings are disabled.
+     */
+    static final Timing NONE = new Timing(null) {
+        @Override
+        public Timing classes(final long classes) {
+            return this;
+        }
+
+        @Override
+        public Timing bytes(final long bytes) {
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Timings.Phase phase;
+    private final long start = System.nanoTime();
+    private long classes = 0;
+    private long bytes = 0;
+
+    Timing(final Timings.Phase phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Adds the given number of classes, to those processed by this timing.
+     *
+     * @param classes The number of classes
+     * @return {@code this}, for chaining
+     */
+    public Timing classes(final long classes) {
+        this.classes += classes;
+        return this;
+    }
+
+    /**
+     * Adds the given number of bytes, to those processed by this timing.
+     *
+     * @param bytes The number of bytes
+     * @return {@code this}, for chaining
+     */
+    public Timing bytes(final long bytes) {
+        this.bytes += bytes;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        this.phase.record(System.nanoTime() - this.start, this.classes, this.bytes);
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.timing;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A low-overhead timing layer, for recording where the time in a
+ * run goes.
+ *
+ * <p>Timings are disabled by default, in which case {@link #start(String)}
+ * returns a shared no-op {@link Timing}, and nothing is recorded.</p>
+ */
+public final class Timings {
+
+    private static final Map<String, Phase> PHASES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = false;
+
+    /**
+     * Enables, or disables, the recording of timings.
+     *
+     * @param enabled Whether timings should be recorded
+     */
+    public static void setEnabled(final boolean enabled) {
+        Timings.enabled = enabled;
+    }
+
+    /**
+     * Establishes whether timings are being recorded.
+     *
+     * @return {@code true} should timings be recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing the given phase, the returned {@link Timing} should
+     * be closed once the phase has completed.
+     *
+     * @param phase The name of the phase
+     * @return The timing
+     */
+    public static Timing start(final String phase) {
+        if (!enabled) return Timing.NONE;
+        return new Timing(PHASES.computeIfAbsent(phase, Phase::new));
+    }
+
+    /**
+     * Discards all of the recorded timings.
+     */
+    public static void reset() {
+        PHASES.clear();
+    }
+
+    /**
+     * Prints a summary table of the recorded timings, ordered by the
+     * total time spent in each phase.
+     *
+     * @param out The stream to print to
+     */
+    public static void printSummary(final PrintStream out) {
+        final List<Phase> phases = new ArrayList<>(PHASES.values());
+        phases.sort(Comparator.comparingLong((Phase phase) -> phase.nanos.sum()).reversed());
+
+        out.println(String.format(Locale.ROOT, "%-40s %8s %12s %10s %10s %14s", "Phase", "Count", "Total (ms)", "Max (ms)", "Classes", "Bytes"));
+        for (final Phase phase : phases) {
+            out.println(String.format(Locale.ROOT, "%-40s %8d %12.2f %10.2f %10d %14d",
+                    phase.name,
+                    phase.count.sum(),
+                    phase.nanos.sum() / 1e6,
+                    phase.max / 1e6,
+                    phase.classes.sum(),
+                    phase.bytes.sum()
+            ));
+        }
+    }
+
+    /**
+     * The accumulated statistics of a single phase.
+     */
+    static final class Phase {
+
+        final String name;
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder classes = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        volatile long max = 0;
+
+        Phase(final String name) {
+            this.name = name;
+        }
+
+        void record(final long nanos, final long classes, final long bytes) {
+            this.count.increment();
+            this.nanos.add(nanos);
+            this.classes.add(classes);
+            this.bytes.add(bytes);
+
+            // Racing updates may lose a maximum, which is fine for a summary
+            if (nanos > this.max) {
+                this.max = nanos;
+            }
+        }
+
+    }
+
+    private Timings() {
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.tool;
+
+import static java.util.Arrays.asList;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import me.jamiemansfield.lorenz.io.writer.SrgWriter;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+import me.jamiemansfield.potassium.mapper.MappingTables;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This is the user-facing program for merging, and composing, SRG
+ * mappings - see {@link MappingTables}.
+ *
+ * <p>The SRG files to combine are given as arguments, and are combined
+ * from left to right.</p>
+ */
+public final class MappingsTool {
+
+    public static void main(final String[] args) {
+        final OptionParser parser = new OptionParser();
+
+        final OptionSpec<Void> helpSpec = parser.acceptsAll(asList("?", "help"), "Show the help")
+                .forHelp();
+
+        final OptionSpec<Void> mergeSpec = parser.accepts("merge", "Merge the mappings, keeping the earliest of any conflicting mappings");
+        final OptionSpec<Void> composeSpec = parser.accepts("compose", "Compose the mappings, each mapping the names of the last");
+        final OptionSpec<Path> outSpec = parser.accepts("out", "The location of the combined srg")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE)
+                .defaultsTo(Paths.get("out.srg"));
+        final OptionSpec<Void> timingsSpec = parser.accepts("timings", "Print a summary of where the time was spent");
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (final OptionException ex) {
+            System.err.println("Failed to parse OptionSet! Exiting...");
+            ex.printStackTrace(System.err);
+            System.exit(-1);
+            return;
+        }
+
+        final List<Path> inputs = options == null ? null : options.nonOptionArguments().stream()
+                .map(argument -> Paths.get(String.valueOf(argument)))
+                .collect(Collectors.toList());
+
+        if (options == null || options.has(helpSpec) || options.has(mergeSpec) == options.has(composeSpec) || inputs.size() < 2) {
+            try {
+                System.err.println("Usage: (--merge | --compose) [--out out.srg] <srg> <srg>...");
+                parser.printHelpOn(System.err);
+            } catch (final IOException ex) {
+                System.err.println("Failed to print help information!");
+                ex.printStackTrace(System.err);
+            }
+            System.exit(-1);
+            return;
+        }
+
+        Timings.setEnabled(options.has(timingsSpec));
+
+        MappingTable result = null;
+        for (final Path input : inputs) {
+            final MappingTable table;
+            try (final Timing timing = Timings.start("srg.read");
+                 final BufferedReader reader = Files.newBufferedReader(input)) {
+                table = MappingTables.readSrg(reader);
+                timing.classes(table.getClassCount());
+            } catch (final IOException ex) {
+                System.err.println("Failed to read " + input + "!");
+                ex.printStackTrace(System.err);
+                System.exit(-1);
+                return;
+            }
+
+            if (result == null) {
+                result = table;
+            } else if (options.has(mergeSpec)) {
+                final MappingTables.MergeResult merged;
+                try (final Timing timing = Timings.start("mappings.merge")) {
+                    merged = MappingTables.merge(result, table);
+                }
+                merged.getConflicts().forEach(conflict -> System.err.println("Conflict in " + input.getFileName() + ", " + conflict));
+                result = merged.getTable();
+            } else {
+                try (final Timing timing = Timings.start("mappings.compose")) {
+                    result = MappingTables.compose(result, table);
+                }
+            }
+        }
+
+        try (final Timing timing = Timings.start("srg.write");
+             final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(options.valueOf(outSpec))))) {
+            writer.write(result.toMappingSet());
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+        }
+
+        if (Timings.isEnabled()) {
+            Timings.printSummary(System.out);
+        }
+    }
+
+    private MappingsTool() {
+    }
+
+}
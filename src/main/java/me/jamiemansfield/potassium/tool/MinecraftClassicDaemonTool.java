@@ -0,0 +1,108 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.tool;
+
+import static java.util.Arrays.asList;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import me.jamiemansfield.potassium.daemon.DaemonCache;
+import me.jamiemansfield.potassium.daemon.PotassiumDaemon;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * This is the user-facing program for running Potassium as a daemon,
+ * see {@link PotassiumDaemon} for the protocol.
+ */
+public final class MinecraftClassicDaemonTool {
+
+    public static void main(final String[] args) {
+        final OptionParser parser = new OptionParser();
+
+        final OptionSpec<Void> helpSpec = parser.acceptsAll(asList("?", "help"), "Show the help")
+                .forHelp();
+
+        final OptionSpec<Integer> portSpec = parser.accepts("port", "The loopback port to listen on")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(25570);
+        final OptionSpec<Integer> cacheSizeSpec = parser.accepts("cacheSize", "The maximum number of jars to keep loaded")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(8);
+        final OptionSpec<Path> tokenFileSpec = parser.accepts("tokenFile", "The file to write the authentication token to")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE)
+                .defaultsTo(Paths.get(System.getProperty("user.home"), ".potassium", "daemon.token"));
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (final OptionException ex) {
+            System.err.println("Failed to parse OptionSet! Exiting...");
+            ex.printStackTrace(System.err);
+            System.exit(-1);
+            return;
+        }
+
+        if (options == null || options.has(helpSpec)) {
+            try {
+                parser.printHelpOn(System.err);
+            } catch (final IOException ex) {
+                System.err.println("Failed to print help information!");
+                ex.printStackTrace(System.err);
+            }
+            System.exit(-1);
+            return;
+        }
+
+        final PotassiumDaemon daemon = new PotassiumDaemon(options.valueOf(portSpec), new DaemonCache(options.valueOf(cacheSizeSpec)),
+                options.valueOf(tokenFileSpec));
+        try {
+            daemon.run();
+        } catch (final IOException ex) {
+            System.err.println("Failed to run the daemon!");
+            ex.printStackTrace(System.err);
+            System.exit(-1);
+        }
+    }
+
+    private MinecraftClassicDaemonTool() {
+    }
+
+}
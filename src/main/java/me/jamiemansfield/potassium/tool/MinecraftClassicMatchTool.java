@@ -0,0 +1,158 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.tool;
+
+import static java.util.Arrays.asList;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import me.jamiemansfield.lorenz.MappingSet;
+import me.jamiemansfield.lorenz.io.writer.SrgWriter;
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.env.MinecraftClassicEnvironment;
+import me.jamiemansfield.potassium.jar.JarWalker;
+import me.jamiemansfield.potassium.jar.SourceSet;
+import me.jamiemansfield.potassium.match.ClassMatcher;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * This is the user-facing program for carrying the mappings of one
+ * version of Minecraft Classic over to another, see {@link ClassMatcher}.
+ */
+public final class MinecraftClassicMatchTool {
+
+    public static void main(final String[] args) {
+        final OptionParser parser = new OptionParser();
+
+        final OptionSpec<Void> helpSpec = parser.acceptsAll(asList("?", "help"), "Show the help")
+                .forHelp();
+
+        final OptionSpec<Path> oldJarPathSpec = parser.accepts("oldJar", "The location of the jar the environment can map")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE)
+                .defaultsTo(Paths.get("old.jar"));
+        final OptionSpec<Path> newJarPathSpec = parser.accepts("newJar", "The location of the jar to transfer the mappings to")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE)
+                .defaultsTo(Paths.get("new.jar"));
+        final OptionSpec<Path> newSrgPathSpec = parser.accepts("newSrg", "The location of the transferred srg")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE)
+                .defaultsTo(Paths.get("new.srg"));
+        final OptionSpec<Environment.Side> sideSpec = parser.accepts("side", "The side of the jars, CLIENT or SERVER")
+                .withRequiredArg()
+                .ofType(Environment.Side.class)
+                .defaultsTo(Environment.Side.CLIENT);
+
+        final OptionSpec<Double> thresholdSpec = parser.accepts("threshold", "The minimum similarity of paired classes")
+                .withRequiredArg()
+                .ofType(Double.class)
+                .defaultsTo(0.8);
+        final OptionSpec<Void> timingsSpec = parser.accepts("timings", "Print a summary of where the time was spent");
+        final OptionSpec<Integer> threadsSpec = parser.accepts("threads", "The number of threads to map, and match, with")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(Runtime.getRuntime().availableProcessors());
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (final OptionException ex) {
+            System.err.println("Failed to parse OptionSet! Exiting...");
+            ex.printStackTrace(System.err);
+            System.exit(-1);
+            return;
+        }
+
+        if (options == null || options.has(helpSpec)) {
+            try {
+                parser.printHelpOn(System.err);
+            } catch (final IOException ex) {
+                System.err.println("Failed to print help information!");
+                ex.printStackTrace(System.err);
+            }
+            System.exit(-1);
+            return;
+        }
+
+        final Path oldJar = options.valueOf(oldJarPathSpec);
+        final Path newJar = options.valueOf(newJarPathSpec);
+        final Path newSrg = options.valueOf(newSrgPathSpec);
+
+        if (!(Files.exists(oldJar) && Files.exists(newJar))) {
+            throw new RuntimeException("Old jar, new jar, or both do not exist!");
+        }
+
+        Timings.setEnabled(options.has(timingsSpec));
+
+        // Map the old version
+        final SourceSet oldSources = new SourceSet();
+        new JarWalker(oldJar).walk(oldSources);
+        final MinecraftClassicEnvironment env = new MinecraftClassicEnvironment(oldSources, options.valueOf(sideSpec));
+        env.setParallelism(options.valueOf(threadsSpec));
+        env.map();
+
+        // Then carry its mappings over to the new version
+        final SourceSet newSources = new SourceSet();
+        new JarWalker(newJar).walk(newSources);
+        final ClassMatcher matcher = new ClassMatcher(oldSources, newSources)
+                .setThreshold(options.valueOf(thresholdSpec))
+                .setParallelism(options.valueOf(threadsSpec));
+        final MappingSet mappings = matcher.transfer(env.getMappings());
+        System.out.println("Paired " + matcher.match().size() + " of " + oldSources.getClassNames().size() + " classes");
+
+        try (final Timing timing = Timings.start("srg.write");
+             final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(newSrg)))) {
+            writer.write(mappings);
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+        }
+
+        if (Timings.isEnabled()) {
+            Timings.printSummary(System.out);
+        }
+    }
+
+    private MinecraftClassicMatchTool() {
+    }
+
+}
@@ -40,12 +40,21 @@ import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import me.jamiemansfield.potassium.patcher.InnerClassPatcher;
+import me.jamiemansfield.potassium.patcher.PatchVerifier;
+import me.jamiemansfield.potassium.timing.RunReport;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.IoExecutors;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 public final class MinecraftClassicPatcherTool {
 
@@ -73,6 +82,29 @@ public final class MinecraftClassicPatcherTool {
                 .withValuesConvertedBy(PathValueConverter.INSTANCE)
                 .defaultsTo(Paths.get("server-fixed.jar"));
 
+        final OptionSpec<Integer> compressionLevelSpec = parser.accepts("compressionLevel", "The compression level of the fixed jars, from 0 to 9")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(Deflater.DEFAULT_COMPRESSION);
+
+        final OptionSpec<Path> reportSpec = parser.accepts("report", "Write a report of what each class cost, as JSON or, for a .csv file, CSV")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE);
+        final OptionSpec<Integer> reportTopSpec = parser.accepts("reportTop", "The number of classes in each summary, with --report")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(10);
+
+        final OptionSpec<Void> timingsSpec = parser.accepts("timings", "Print a summary of where the time was spent");
+        final OptionSpec<Void> verifySpec = parser.accepts("verify", "Verify the patched classes");
+        final OptionSpec<Double> verifySampleSpec = parser.accepts("verifySample", "The proportion of unpatched classes to verify, with --verify")
+                .withRequiredArg()
+                .ofType(Double.class)
+                .defaultsTo(0.0);
+        final OptionSpec<Path> verifyClasspathSpec = parser.accepts("verifyClasspath", "A library used to resolve the class hierarchy, with --verify")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE);
+
         final OptionSet options;
         try {
             options = parser.parse(args);
@@ -103,7 +135,91 @@ public final class MinecraftClassicPatcherTool {
             throw new RuntimeException("Client jar, server jar, or both do not exist!");
         }
 
-        InnerClassPatcher.patchJar(clientJar, fixedClientJar, new InnerClassPatcher.Configuration() {
+        final int level = options.valueOf(compressionLevelSpec);
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            System.err.println("The compression level must be from 0 to 9!");
+            System.exit(-1);
+            return;
+        }
+
+        Timings.setEnabled(options.has(timingsSpec));
+        RunReport.setEnabled(options.has(reportSpec));
+
+        // The client and server are independent, so patch them alongside each other
+        final ExecutorService executor = IoExecutors.create("Potassium");
+        boolean succeeded = true;
+        try {
+            final Future<Set<String>> client = executor.submit(() -> InnerClassPatcher.patchJar(clientJar, fixedClientJar, clientConfiguration().compile(), level));
+            final Future<Set<String>> server = executor.submit(() -> InnerClassPatcher.patchJar(serverJar, fixedServerJar, serverConfiguration().compile(), level));
+
+            // Wait for both, so neither is left running should the other fail
+            final Set<String> clientModified = patched(client, clientJar);
+            final Set<String> serverModified = patched(server, serverJar);
+            succeeded = clientModified != null && serverModified != null;
+
+            if (succeeded && options.has(verifySpec)) {
+                succeeded &= verify(fixedClientJar, clientModified, options.valueOf(verifySampleSpec), options.valuesOf(verifyClasspathSpec));
+                succeeded &= verify(fixedServerJar, serverModified, options.valueOf(verifySampleSpec), options.valuesOf(verifyClasspathSpec));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (Timings.isEnabled()) {
+            Timings.printSummary(System.out);
+        }
+
+        if (options.has(reportSpec)) {
+            writeReport(options.valueOf(reportSpec), options.valueOf(reportTopSpec));
+        }
+
+        if (!succeeded) {
+            System.exit(-1);
+        }
+    }
+
+    private static Set<String> patched(final Future<Set<String>> future, final Path jar) {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while patching " + jar + "!");
+            return null;
+        } catch (final ExecutionException ex) {
+            System.err.println("Failed to patch " + jar + "!");
+            ex.getCause().printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    private static void writeReport(final Path report, final int top) {
+        try {
+            RunReport.write(report, top);
+        } catch (final IOException ex) {
+            System.err.println("Failed to write the run report!");
+            ex.printStackTrace(System.err);
+        }
+        RunReport.printSummary(System.out, top);
+    }
+
+    private static boolean verify(final Path jar, final Set<String> modified, final double sampleRate, final List<Path> classpath) {
+        final PatchVerifier verifier = new PatchVerifier(jar).sample(sampleRate);
+        classpath.forEach(verifier::classpath);
+
+        final PatchVerifier.Report report = verifier.verify(modified);
+        System.out.print(jar.getFileName() + ": ");
+        report.print(System.out);
+        return report.isSuccessful();
+    }
+
+    /**
+     * Creates the {@link InnerClassPatcher.Configuration} used to fix the
+     * Minecraft Classic client.
+     *
+     * @return The client configuration
+     */
+    public static InnerClassPatcher.Configuration clientConfiguration() {
+        return new InnerClassPatcher.Configuration() {
             {
                 // Minecraft Class Fixes
                 {
@@ -191,13 +307,21 @@ public final class MinecraftClassicPatcherTool {
                     }
                 }
             }
-        });
+        };
+    }
 
-        InnerClassPatcher.patchJar(serverJar, fixedServerJar, new InnerClassPatcher.Configuration() {
+    /**
+     * Creates the {@link InnerClassPatcher.Configuration} used to fix the
+     * Minecraft Classic server.
+     *
+     * @return The server configuration
+     */
+    public static InnerClassPatcher.Configuration serverConfiguration() {
+        return new InnerClassPatcher.Configuration() {
             {
                 // TODO: server config
             }
-        });
+        };
     }
 
     private MinecraftClassicPatcherTool() {
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.tool;
+
+import static java.util.Arrays.asList;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import me.jamiemansfield.potassium.env.Environment;
+import me.jamiemansfield.potassium.env.MinecraftClassicEnvironment;
+import me.jamiemansfield.potassium.jar.JarWalker;
+import me.jamiemansfield.potassium.jar.SourceSet;
+import me.jamiemansfield.potassium.mapper.MappingTable;
+import me.jamiemansfield.potassium.runtime.RemappingClassLoader;
+import me.jamiemansfield.potassium.timing.Timings;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * This is the user-facing program for launching Minecraft Classic,
+ * de-obfuscated, without writing any jars - see
+ * {@link RemappingClassLoader}.
+ *
+ * <p>Any arguments that aren't options are passed to the game.</p>
+ */
+public final class MinecraftClassicRunTool {
+
+    public static void main(final String[] args) {
+        final OptionParser parser = new OptionParser();
+
+        final OptionSpec<Void> helpSpec = parser.acceptsAll(asList("?", "help"), "Show the help")
+                .forHelp();
+
+        final OptionSpec<Path> clientJarPathSpec = parser.accepts("clientJar", "The location of the client jar")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE)
+                .defaultsTo(Paths.get("client.jar"));
+        final OptionSpec<String> mainClassSpec = parser.accepts("mainClass", "The de-obfuscated name of the main class")
+                .withRequiredArg()
+                .defaultsTo("com.mojang.minecraft.Minecraft");
+
+        final OptionSpec<Void> timingsSpec = parser.accepts("timings", "Print a summary of where the time was spent");
+        final OptionSpec<Integer> threadsSpec = parser.accepts("threads", "The number of threads to map with")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (final OptionException ex) {
+            System.err.println("Failed to parse OptionSet! Exiting...");
+            ex.printStackTrace(System.err);
+            System.exit(-1);
+            return;
+        }
+
+        if (options == null || options.has(helpSpec)) {
+            try {
+                parser.printHelpOn(System.err);
+            } catch (final IOException ex) {
+                System.err.println("Failed to print help information!");
+                ex.printStackTrace(System.err);
+            }
+            System.exit(-1);
+            return;
+        }
+
+        final Path clientJar = options.valueOf(clientJarPathSpec);
+
+        if (!Files.exists(clientJar)) {
+            throw new RuntimeException("Client jar does not exist!");
+        }
+
+        Timings.setEnabled(options.has(timingsSpec));
+
+        // Map the client, keeping the mappings in memory
+        final SourceSet sources = new SourceSet();
+        new JarWalker(clientJar).walk(sources);
+        final MinecraftClassicEnvironment env = new MinecraftClassicEnvironment(sources, Environment.Side.CLIENT);
+        env.setParallelism(options.valueOf(threadsSpec));
+        env.map();
+
+        final String[] gameArgs = options.nonOptionArguments().stream()
+                .map(String::valueOf)
+                .toArray(String[]::new);
+
+        // The loader is left open, as the game keeps loading classes from
+        // its own threads after main returns
+        try {
+            final RemappingClassLoader loader = new RemappingClassLoader(clientJar, MappingTable.of(env.getMappings()),
+                    MinecraftClassicPatcherTool.clientConfiguration(), MinecraftClassicRunTool.class.getClassLoader());
+            Thread.currentThread().setContextClassLoader(loader);
+
+            final Method main = Class.forName(options.valueOf(mainClassSpec), true, loader)
+                    .getMethod("main", String[].class);
+            main.invoke(null, (Object) gameArgs);
+        } catch (final IOException | ReflectiveOperationException ex) {
+            System.err.println("Failed to launch the game!");
+            (ex instanceof InvocationTargetException ? ex.getCause() : ex).printStackTrace(System.err);
+            System.exit(-1);
+            return;
+        }
+
+        if (Timings.isEnabled()) {
+            Timings.printSummary(System.out);
+        }
+    }
+
+    private MinecraftClassicRunTool() {
+    }
+
+}
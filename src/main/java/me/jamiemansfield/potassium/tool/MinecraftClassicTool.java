@@ -41,14 +41,29 @@ import joptsimple.OptionSpec;
 import me.jamiemansfield.lorenz.io.writer.SrgWriter;
 import me.jamiemansfield.potassium.env.Environment;
 import me.jamiemansfield.potassium.env.MinecraftClassicEnvironment;
+import me.jamiemansfield.potassium.jar.ClassStore;
+import me.jamiemansfield.potassium.jar.InputStreamWalker;
 import me.jamiemansfield.potassium.jar.JarWalker;
 import me.jamiemansfield.potassium.jar.SourceSet;
+import me.jamiemansfield.potassium.jar.Walker;
+import me.jamiemansfield.potassium.mapper.MappingTables;
+import me.jamiemansfield.potassium.shard.Shard;
+import me.jamiemansfield.potassium.shard.ShardCoordinator;
+import me.jamiemansfield.potassium.timing.RunReport;
+import me.jamiemansfield.potassium.timing.Timing;
+import me.jamiemansfield.potassium.timing.Timings;
+import me.jamiemansfield.potassium.util.IoExecutors;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * This is the user-facing program for mapping Minecraft Classic.
@@ -61,11 +76,11 @@ public final class MinecraftClassicTool {
         final OptionSpec<Void> helpSpec = parser.acceptsAll(asList("?", "help"), "Show the help")
                 .forHelp();
 
-        final OptionSpec<Path> clientJarPathSpec = parser.accepts("clientJar", "The location of the client jar")
+        final OptionSpec<Path> clientJarPathSpec = parser.accepts("clientJar", "The location of the client jar, or - for standard input")
                 .withRequiredArg()
                 .withValuesConvertedBy(PathValueConverter.INSTANCE)
                 .defaultsTo(Paths.get("client.jar"));
-        final OptionSpec<Path> serverJarPathSpec = parser.accepts("serverJar", "The location of the server jar")
+        final OptionSpec<Path> serverJarPathSpec = parser.accepts("serverJar", "The location of the server jar, or - for standard input")
                 .withRequiredArg()
                 .withValuesConvertedBy(PathValueConverter.INSTANCE)
                 .defaultsTo(Paths.get("server.jar"));
@@ -79,6 +94,33 @@ public final class MinecraftClassicTool {
                 .withValuesConvertedBy(PathValueConverter.INSTANCE)
                 .defaultsTo(Paths.get("server.srg"));
 
+        final OptionSpec<Void> timingsSpec = parser.accepts("timings", "Print a summary of where the time was spent");
+        final OptionSpec<Integer> threadsSpec = parser.accepts("threads", "The number of threads to map with")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+        final OptionSpec<Integer> maxParsedClassesSpec = parser.accepts("maxParsedClasses", "The maximum number of parsed classes to hold at once")
+                .withRequiredArg()
+                .ofType(Integer.class);
+        final OptionSpec<Integer> shardsSpec = parser.accepts("shards", "The number of worker processes to split each jar across")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+        final OptionSpec<Shard.Strategy> shardBySpec = parser.accepts("shardBy", "How classes are split across workers, HASH or PACKAGE")
+                .withRequiredArg()
+                .ofType(Shard.Strategy.class)
+                .defaultsTo(Shard.Strategy.HASH);
+        final OptionSpec<String> workerHeapSpec = parser.accepts("workerHeap", "The maximum heap of each worker, with --shards")
+                .withRequiredArg();
+        final OptionSpec<Path> reportSpec = parser.accepts("report", "Write a report of what each class cost, as JSON or, for a .csv file, CSV")
+                .withRequiredArg()
+                .withValuesConvertedBy(PathValueConverter.INSTANCE);
+        final OptionSpec<Integer> reportTopSpec = parser.accepts("reportTop", "The number of classes in each summary, with --report")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(10);
+        final OptionSpec<Void> offHeapSpec = parser.accepts("offHeap", "Hold the raw class bytes off-heap, with --maxParsedClasses");
+
         final OptionSet options;
         try {
             options = parser.parse(args);
@@ -105,35 +147,144 @@ public final class MinecraftClassicTool {
         final Path clientSrg = options.valueOf(clientSrgPathSpec);
         final Path serverSrg = options.valueOf(serverSrgPathSpec);
 
-        if (!(Files.exists(clientJar) && Files.exists(serverJar))) {
+        if (!(exists(clientJar) && exists(serverJar))) {
             throw new RuntimeException("Client jar, server jar, or both do not exist!");
         }
+        if (isStandardInput(clientJar) && isStandardInput(serverJar)) {
+            throw new RuntimeException("Only one of the client and server jars can be read from standard input!");
+        }
 
-        {
-            final SourceSet clientSources = new SourceSet();
-            new JarWalker(clientJar).walk(clientSources);
-            final MinecraftClassicEnvironment clientEnv = new MinecraftClassicEnvironment(clientSources, Environment.Side.CLIENT);
-            clientEnv.map();
+        Timings.setEnabled(options.has(timingsSpec));
+        RunReport.setEnabled(options.has(reportSpec));
 
-            try (final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(clientSrg)))) {
-                writer.write(clientEnv.getMappings());
-            } catch (final IOException ex) {
-                ex.printStackTrace();
-            }
+        // Classes shared by the client and server are only parsed, and
+        // mapped, once - unless the parsed classes are bounded
+        final ClassStore store = new ClassStore();
+        final Supplier<SourceSet> sourceSets = () -> options.has(maxParsedClassesSpec) ?
+                new SourceSet(options.valueOf(maxParsedClassesSpec), options.has(offHeapSpec)) :
+                new SourceSet(store);
+
+        final int shards = options.valueOf(shardsSpec);
+        if (shards > 1 && (isStandardInput(clientJar) || isStandardInput(serverJar))) {
+            throw new RuntimeException("Jars can not be read from standard input with --shards!");
+        }
+        if (shards > 1 && options.has(reportSpec)) {
+            // The classes are parsed, and mapped, by the workers
+            throw new RuntimeException("A run report can not be written with --shards!");
         }
+        final Function<Environment.Side, ShardCoordinator> coordinators = side -> {
+            final ShardCoordinator coordinator = new ShardCoordinator(side == Environment.Side.CLIENT ? clientJar : serverJar, side, shards)
+                    .setStrategy(options.valueOf(shardBySpec))
+                    .setThreads(options.valueOf(threadsSpec));
+            if (options.has(workerHeapSpec)) coordinator.setWorkerHeap(options.valueOf(workerHeapSpec));
+            if (options.has(maxParsedClassesSpec)) coordinator.setMaxParsedClasses(options.valueOf(maxParsedClassesSpec));
+            return coordinator;
+        };
 
-        {
-            final SourceSet serverSources = new SourceSet();
-            new JarWalker(serverJar).walk(serverSources);
-            final MinecraftClassicEnvironment serverEnv = new MinecraftClassicEnvironment(serverSources, Environment.Side.SERVER);
-            serverEnv.map();
+        // The client and server are independent, so map them alongside each other
+        final ExecutorService executor = IoExecutors.create("Potassium");
+        boolean succeeded = false;
+        try {
+            final Future<?> client = executor.submit(() -> {
+                if (shards > 1) {
+                    mapSharded(coordinators.apply(Environment.Side.CLIENT), clientSrg);
+                } else {
+                    map(clientJar, clientSrg, Environment.Side.CLIENT, sourceSets.get(), options.valueOf(threadsSpec));
+                }
+            });
+            final Future<?> server = executor.submit(() -> {
+                if (shards > 1) {
+                    mapSharded(coordinators.apply(Environment.Side.SERVER), serverSrg);
+                } else {
+                    map(serverJar, serverSrg, Environment.Side.SERVER, sourceSets.get(), options.valueOf(threadsSpec));
+                }
+            });
+            client.get();
+            server.get();
+            succeeded = true;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while mapping the jars!");
+        } catch (final ExecutionException ex) {
+            System.err.println("Failed to map the jars!");
+            ex.printStackTrace(System.err);
+        } finally {
+            executor.shutdown();
+        }
 
-            try (final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(serverSrg)))) {
-                writer.write(serverEnv.getMappings());
-            } catch (final IOException ex) {
-                ex.printStackTrace();
-            }
+        if (Timings.isEnabled()) {
+            System.out.println("Class store: " + store);
+            Timings.printSummary(System.out);
         }
+
+        if (options.has(reportSpec)) {
+            writeReport(options.valueOf(reportSpec), options.valueOf(reportTopSpec));
+        }
+
+        if (!succeeded) {
+            System.exit(-1);
+        }
+    }
+
+    private static void map(final Path jar, final Path srg, final Environment.Side side,
+            final SourceSet sources, final int threads) {
+        final MinecraftClassicEnvironment env = new MinecraftClassicEnvironment(sources, side);
+        env.setParallelism(threads);
+        // Classes read from standard input are parsed as they arrive, so
+        // only parse the parts the environment will look at
+        final Walker walker = isStandardInput(jar) ?
+                new InputStreamWalker(System.in, env.getRequiredParts(), threads) :
+                new JarWalker(jar);
+        walker.walk(sources);
+        env.map();
+
+        try (final Timing timing = Timings.start("srg.write");
+             final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(srg)))) {
+            writer.write(env.getMappings());
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+        }
+
+        if (Timings.isEnabled()) {
+            System.out.println(side + " classes: " + sources.getStatistics());
+        }
+    }
+
+    private static void writeReport(final Path report, final int top) {
+        try {
+            RunReport.write(report, top);
+        } catch (final IOException ex) {
+            System.err.println("Failed to write the run report!");
+            ex.printStackTrace(System.err);
+        }
+        RunReport.printSummary(System.out, top);
+    }
+
+    private static void mapSharded(final ShardCoordinator coordinator, final Path srg) {
+        final MappingTables.MergeResult result;
+        try {
+            result = coordinator.map();
+        } catch (final IOException ex) {
+            System.err.println("Failed to map the shards!");
+            ex.printStackTrace(System.err);
+            return;
+        }
+        result.getConflicts().forEach(conflict -> System.err.println("Conflict between shards, " + conflict));
+
+        try (final Timing timing = Timings.start("srg.write");
+             final SrgWriter writer = new SrgWriter(new PrintWriter(Files.newOutputStream(srg)))) {
+            writer.write(result.getTable().toMappingSet());
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static boolean isStandardInput(final Path jar) {
+        return "-".equals(jar.toString());
+    }
+
+    private static boolean exists(final Path jar) {
+        return isStandardInput(jar) || Files.exists(jar);
     }
 
     private MinecraftClassicTool() {
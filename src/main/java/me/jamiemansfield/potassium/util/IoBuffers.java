@@ -0,0 +1,216 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of reusable, growable, buffers for reading the entries of jars -
+ * so reading a jar doesn't allocate a fresh set of buffers for every
+ * entry.
+ *
+ * <p>The buffers are pooled, rather than held per thread, as on Java 21
+ * each read runs on a virtual thread of its own. Only a limited number
+ * of buffers, of a limited size, are kept.</p>
+ */
+public final class IoBuffers {
+
+    private static final int INITIAL_SIZE = 16 * 1024;
+    private static final int MAXIMUM_POOLED_SIZE = 1024 * 1024;
+    private static final int MAXIMUM_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final Deque<byte[]> POOL = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    /**
+     * Reads the whole of the given stream into an array of exactly its
+     * length.
+     *
+     * <p>Should the size be known, the array is read into directly,
+     * otherwise the stream is read into a pooled buffer first.</p>
+     *
+     * @param in The stream
+     * @param size The size of the stream, or {@code -1} should it be
+     *             unknown
+     * @return The bytes of the stream
+     * @throws IOException Should the stream not be readable
+     */
+    public static byte[] toByteArray(final InputStream in, final long size) throws IOException {
+        if (size >= 0 && size <= Integer.MAX_VALUE) {
+            final byte[] bytes = new byte[(int) size];
+            int read = 0;
+            while (read < bytes.length) {
+                final int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) throw new EOFException("Expected " + size + " bytes, but only " + read + " were read");
+                read += count;
+            }
+            final int next = in.read();
+            if (next == -1) return bytes;
+
+            // The size was wrong, so read the rest as though it were unknown
+            try (final Buffer buffer = new Buffer(take(bytes.length + 1L))) {
+                buffer.append(bytes, bytes.length);
+                buffer.append(new byte[] { (byte) next }, 1);
+                buffer.readFrom(in);
+                return buffer.toByteArray();
+            }
+        }
+
+        try (final Buffer buffer = read(in, size)) {
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Reads the whole of the given stream into a pooled buffer, that must
+     * be closed once it has been finished with.
+     *
+     * @param in The stream
+     * @param size The size of the stream, or {@code -1} should it be
+     *             unknown
+     * @return The buffer
+     * @throws IOException Should the stream not be readable
+     */
+    public static Buffer read(final InputStream in, final long size) throws IOException {
+        // Leave room for the end of the stream to be found, without growing
+        final Buffer buffer = new Buffer(take(size < 0 ? -1 : size + 1));
+        try {
+            buffer.readFrom(in);
+            return buffer;
+        } catch (final IOException | RuntimeException ex) {
+            buffer.close();
+            throw ex;
+        }
+    }
+
+    private static byte[] take(final long size) {
+        final byte[] pooled = POOL.pollFirst();
+        if (pooled != null) {
+            POOLED.decrementAndGet();
+            if (size <= pooled.length) return pooled;
+            give(pooled);
+        }
+        return new byte[(int) Math.max(INITIAL_SIZE, Math.min(size, Integer.MAX_VALUE - 8))];
+    }
+
+    private static void give(final byte[] buffer) {
+        if (buffer.length > MAXIMUM_POOLED_SIZE) return;
+        if (POOLED.incrementAndGet() > MAXIMUM_POOLED) {
+            POOLED.decrementAndGet();
+            return;
+        }
+        POOL.offerFirst(buffer);
+    }
+
+    /**
+     * A pooled buffer, holding the bytes of a stream.
+     */
+    public static final class Buffer implements AutoCloseable {
+
+        private byte[] bytes;
+        private int length = 0;
+
+        private Buffer(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Gets the array backing the buffer, which may be longer than
+         * the buffer - see {@link #getLength()}.
+         *
+         * @return The backing array
+         */
+        public byte[] getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * Gets the number of bytes held in the buffer.
+         *
+         * @return The length of the buffer
+         */
+        public int getLength() {
+            return this.length;
+        }
+
+        /**
+         * Copies the bytes held in the buffer into an array of exactly
+         * their length.
+         *
+         * @return The bytes
+         */
+        public byte[] toByteArray() {
+            return Arrays.copyOf(this.bytes, this.length);
+        }
+
+        @Override
+        public void close() {
+            if (this.bytes == null) return;
+            give(this.bytes);
+            this.bytes = null;
+        }
+
+        private void readFrom(final InputStream in) throws IOException {
+            while (true) {
+                if (this.length == this.bytes.length) {
+                    this.grow(this.length + 1);
+                }
+                final int count = in.read(this.bytes, this.length, this.bytes.length - this.length);
+                if (count == -1) return;
+                this.length += count;
+            }
+        }
+
+        private void append(final byte[] bytes, final int length) {
+            this.grow(this.length + length);
+            System.arraycopy(bytes, 0, this.bytes, this.length, length);
+            this.length += length;
+        }
+
+        private void grow(final int minimum) {
+            if (minimum <= this.bytes.length) return;
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(minimum, this.bytes.length * 2));
+        }
+
+    }
+
+    private IoBuffers() {
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of classes, and bytes, being worked on at once by
+ * the parallel stages of the pipeline - blocking those that would go
+ * over the limits until others have finished.
+ *
+ * <p>The limits adapt to the state of the heap: the number of classes
+ * is halved should the heap run short, or the garbage collector take
+ * up too much time, and is grown back by one at a time once it has
+ * recovered. The byte limit follows the free heap. So that progress is
+ * always made, a single class may always be worked on, whatever its
+ * size.</p>
+ */
+public final class ResourceGovernor {
+
+    private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long MINIMUM_BYTES = 1 << 20;
+
+    private static final ResourceGovernor SHARED = new ResourceGovernor(
+            Runtime.getRuntime().maxMemory() / 4,
+            Runtime.getRuntime().availableProcessors() * 2
+    );
+
+    /**
+     * Gets the governor shared by the walkers, environments and patcher,
+     * sized from the maximum heap and number of processors.
+     *
+     * @return The shared governor
+     */
+    public static ResourceGovernor shared() {
+        return SHARED;
+    }
+
+    private final long maximumBytes;
+    private final int maximumClasses;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = this.lock.newCondition();
+
+    private long byteLimit;
+    private int classLimit;
+    private long bytes;
+    private int classes;
+    private long waits;
+
+    private long lastSample = System.nanoTime();
+    private long lastCollectionTime = this.getCollectionTime();
+
+    /**
+     * Creates a new resource governor, with the given upper limits.
+     *
+     * @param maximumBytes The maximum number of bytes worked on at once
+     * @param maximumClasses The maximum number of classes worked on at once
+     */
+    public ResourceGovernor(final long maximumBytes, final int maximumClasses) {
+        if (maximumClasses < 1) throw new IllegalArgumentException("maximumClasses must be at least 1");
+        this.maximumBytes = Math.max(MINIMUM_BYTES, maximumBytes);
+        this.maximumClasses = maximumClasses;
+        this.byteLimit = this.maximumBytes;
+        this.classLimit = maximumClasses;
+    }
+
+    /**
+     * Acquires a permit to work on a class of the given size, blocking
+     * until it is within the limits.
+     *
+     * <p>The permit must be closed once the class has been finished
+     * with, and may be closed from another thread.</p>
+     *
+     * @param size The size of the class, in bytes, or {@code -1} should
+     *             it be unknown
+     * @return The permit
+     */
+    public Permit acquire(final long size) {
+        final long bytes = Math.max(0, size);
+        boolean interrupted = false;
+
+        this.lock.lock();
+        try {
+            this.adapt();
+            boolean waited = false;
+            while (this.classes > 0 && (this.classes >= this.classLimit || this.bytes + bytes > this.byteLimit)) {
+                waited = true;
+                try {
+                    this.released.await(SAMPLE_INTERVAL, TimeUnit.NANOSECONDS);
+                } catch (final InterruptedException ex) {
+                    // Carry on waiting, as the caller has no way to back out
+                    interrupted = true;
+                }
+                this.adapt();
+            }
+            if (waited) this.waits++;
+
+            this.classes++;
+            this.bytes += bytes;
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+        return new Permit(bytes);
+    }
+
+    /**
+     * Acquires a permit to work on a class of the given size, should it
+     * be within the limits - without blocking.
+     *
+     * @param size The size of the class, in bytes, or {@code -1} should
+     *             it be unknown
+     * @return The permit, or {@code null} should it be over the limits
+     * @see #acquire(long)
+     */
+    public Permit tryAcquire(final long size) {
+        final long bytes = Math.max(0, size);
+
+        this.lock.lock();
+        try {
+            this.adapt();
+            if (this.classes > 0 && (this.classes >= this.classLimit || this.bytes + bytes > this.byteLimit)) {
+                this.waits++;
+                return null;
+            }
+
+            this.classes++;
+            this.bytes += bytes;
+        } finally {
+            this.lock.unlock();
+        }
+        return new Permit(bytes);
+    }
+
+    /**
+     * Gets the number of threads that should be used for a stage that
+     * would like to use the given number.
+     *
+     * @param requested The requested number of threads
+     * @return The number of threads to use
+     */
+    public int getParallelism(final int requested) {
+        this.lock.lock();
+        try {
+            this.adapt();
+            return Math.max(1, Math.min(requested, this.classLimit));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current limit on the number of classes worked on at once.
+     *
+     * @return The class limit
+     */
+    public int getClassLimit() {
+        this.lock.lock();
+        try {
+            return this.classLimit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current limit on the number of bytes worked on at once.
+     *
+     * @return The byte limit
+     */
+    public long getByteLimit() {
+        this.lock.lock();
+        try {
+            return this.byteLimit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of times a permit could not be granted straight
+     * away.
+     *
+     * @return The number of waits
+     */
+    public long getWaits() {
+        this.lock.lock();
+        try {
+            return this.waits;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        this.lock.lock();
+        try {
+            return "classes=" + this.classes + "/" + this.classLimit + ", bytes=" + this.bytes + "/" + this.byteLimit + ", waits=" + this.waits;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void release(final long bytes) {
+        this.lock.lock();
+        try {
+            this.classes--;
+            this.bytes -= bytes;
+            this.released.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void adapt() {
+        final long now = System.nanoTime();
+        final long elapsed = now - this.lastSample;
+        if (elapsed < SAMPLE_INTERVAL) return;
+
+        final long collectionTime = this.getCollectionTime();
+        final double gcFraction = TimeUnit.MILLISECONDS.toNanos(collectionTime - this.lastCollectionTime) / (double) elapsed;
+        this.lastSample = now;
+        this.lastCollectionTime = collectionTime;
+
+        final MemoryUsage heap = this.memory.getHeapMemoryUsage();
+        final long max = heap.getMax() > 0 ? heap.getMax() : Runtime.getRuntime().maxMemory();
+        final long free = Math.max(0, max - heap.getUsed());
+        final double headroom = free / (double) max;
+
+        // Back off quickly, and recover slowly
+        final int previousClasses = this.classLimit;
+        final long previousBytes = this.byteLimit;
+        if (gcFraction > 0.25 || headroom < 0.1) {
+            this.classLimit = Math.max(1, this.classLimit / 2);
+        } else if (gcFraction < 0.05 && headroom > 0.3) {
+            this.classLimit = Math.min(this.maximumClasses, this.classLimit + 1);
+        }
+        this.byteLimit = Math.max(MINIMUM_BYTES, Math.min(this.maximumBytes, free / 4));
+
+        if (this.classLimit > previousClasses || this.byteLimit > previousBytes) {
+            this.released.signalAll();
+        }
+    }
+
+    private long getCollectionTime() {
+        long time = 0;
+        for (final GarbageCollectorMXBean collector : this.collectors) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * A permit to work on a class, see {@link #acquire(long)}.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final long bytes;
+        private boolean closed = false;
+
+        private Permit(final long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (this.closed) return;
+                this.closed = true;
+            }
+            ResourceGovernor.this.release(this.bytes);
+        }
+
+    }
+
+}
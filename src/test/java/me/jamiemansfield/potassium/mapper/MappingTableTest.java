@@ -0,0 +1,65 @@
+/*
+ * This file is part of Potassium, licensed under the BSD 3-Clause License.
+ *
+ * Copyright (c) Jamie Mansfield <https://www.jamierocks.uk/>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package me.jamiemansfield.potassium.mapper;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MappingTableTest {
+
+    @Test
+    public void roundTripsInnerClasses() {
+        final MappingTable table = new MappingTable.Builder()
+                .addClass("a", "Foo")
+                .addClass("a$b", "Foo$Bar")
+                .addClass("c$d", "c$Named")
+                .addField("a$b", "e", "baz")
+                .addMethod("a$b", "f", "(La;)V", "qux")
+                .build();
+
+        final MappingTable roundTripped = MappingTable.of(table.toMappingSet());
+
+        assertEquals(3, roundTripped.getClassCount());
+        assertEquals("Foo", roundTripped.mapClass("a"));
+        assertEquals("Foo$Bar", roundTripped.mapClass("a$b"));
+        assertEquals("c$Named", roundTripped.mapClass("c$d"));
+        assertEquals(1, roundTripped.getFieldCount());
+        assertEquals("a$b", roundTripped.getFieldOwner(0));
+        assertEquals("baz", roundTripped.getFieldDeobfuscatedName(0));
+        assertEquals(1, roundTripped.getMethodCount());
+        assertEquals("a$b", roundTripped.getMethodOwner(0));
+        assertEquals("qux", roundTripped.getMethodDeobfuscatedName(0));
+    }
+
+}